@@ -0,0 +1,456 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * An arena where many snakes share one world and several foods. Each snake is
+ * either steered by a SnakeBot or by setDirection(). A snake dies when its
+ * head leaves the world, hits its own body, or hits any part of another snake
+ * (two heads hitting each other both die). Eating a food makes a snake longer
+ * and faster and moves the food.
+ *
+ * The body points of all of the snakes are kept in a shared ArenaBroadphase.
+ * Each tick runs in phases so that the work for each snake can run in
+ * parallel:
+ * <ol>
+ *     <li>steer: each bot picks its snake's direction (only reads the arena)</li>
+ *     <li>move: each snake moves (only changes that snake), logging the body
+ *         points it added and removed</li>
+ *     <li>merge: the logged points are applied to the broadphase (one thread)</li>
+ *     <li>collide: each snake checks its head against the world, itself, the
+ *         other snakes, and the foods (only reads the arena)</li>
+ *     <li>resolve: deaths and eaten foods are applied in snake order (one
+ *         thread)</li>
+ * </ol>
+ * Everything random happens in the single-threaded phases or in a snake's own
+ * bot, so a seeded arena plays out the same no matter how many threads run it.
+ */
+public class Arena implements SnakeBot.World {
+    /** Radius of each food item in dp */
+    public final static float FOOD_SIZE_DP = SnakeGame.FOOD_SIZE_DP;
+
+    /** Number of attempts to find a clear spot to start a snake or place a food before using any spot */
+    private final static int PLACEMENT_ATTEMPTS = 32;
+
+    /** The width and height of the world, in px */
+    private final int width, height;
+
+    /** Converts dp to px */
+    private final float dpToPxFactor;
+
+    /** Random number generator for everything in the single-threaded phases */
+    private final Random random;
+
+    /** The snakes, the bot for each (null for snakes steered with setDirection()), and the log of each snake's body changes */
+    private final Snake[] snakes;
+    private final SnakeBot[] bots;
+    private final BodyLog[] logs;
+
+    /** The direction, speed (dp/tick), score, and if each snake is alive */
+    private final double[] directions, speeds;
+    private final int[] scores;
+    private final boolean[] alive;
+
+    /** Results of the collide phase for each snake: if it died, and the food it is eating (-1 for none) */
+    private final boolean[] dying;
+    private final int[] eating;
+
+    /** Locations of the foods, in px */
+    private final float[] foodX, foodY;
+
+    /** The body points of all of the snakes */
+    private final ArenaBroadphase broadphase;
+
+    /** The difficulty settings, the same for every snake */
+    private final int startingLength;
+    private double initialSpeed = 1, speedIncreasePerFood = 0.04;
+    private int lengthIncreasePerFood = 10;
+
+    /** If dead snakes start again right away, and if the phases run on many threads */
+    private boolean respawn = false, parallel = false;
+
+    /** Number of snakes alive and the number of ticks so far */
+    private int aliveCount;
+    private long ticks = 0;
+
+    /** The work for each snake in the parallel phases */
+    private final IntConsumer steerPhase = this::steer, movePhase = this::move, collidePhase = this::collide;
+
+    /**
+     * Create an arena with every snake alive at a random spot and no bots.
+     * @param width the width of the world in px
+     * @param height the height of the world in px
+     * @param dpToPxFactor the factor to convert dp to px
+     * @param snakeCount the number of snakes
+     * @param foodCount the number of foods
+     * @param startingLength the initial length of each snake
+     * @param seed the seed for the random number generator
+     */
+    public Arena(int width, int height, float dpToPxFactor, int snakeCount, int foodCount, int startingLength, long seed) {
+        this.width = width;
+        this.height = height;
+        this.dpToPxFactor = dpToPxFactor;
+        this.startingLength = startingLength;
+        random = new Random(seed);
+        snakes = new Snake[snakeCount];
+        bots = new SnakeBot[snakeCount];
+        logs = new BodyLog[snakeCount];
+        directions = new double[snakeCount];
+        speeds = new double[snakeCount];
+        scores = new int[snakeCount];
+        alive = new boolean[snakeCount];
+        dying = new boolean[snakeCount];
+        eating = new int[snakeCount];
+        foodX = new float[foodCount];
+        foodY = new float[foodCount];
+        broadphase = new ArenaBroadphase(width, height, 2 * Snake.BODY_PIECE_SIZE_DP * dpToPxFactor);
+        for (int i = 0; i < snakeCount; i++) {
+            logs[i] = new BodyLog();
+            spawn(i);
+        }
+        mergeLogs();
+        for (int i = 0; i < foodCount; i++) { moveFood(i); }
+    }
+
+    /**
+     * @param snake the index of a snake
+     * @param bot the bot to steer the snake, null to steer it with setDirection()
+     */
+    public void setBot(int snake, SnakeBot bot) { bots[snake] = bot; }
+
+    /**
+     * @param snake the index of a snake without a bot
+     * @param angle the new direction of the snake, in radians
+     */
+    public void setDirection(int snake, double angle) { directions[snake] = angle; }
+
+    /**
+     * @param snake the index of a snake
+     * @return the direction the snake is moving, in radians
+     */
+    @Override
+    public double getDirection(int snake) { return directions[snake]; }
+
+    /**
+     * @param respawn true for dead snakes to start again right away as new snakes
+     */
+    public void setRespawn(boolean respawn) { this.respawn = respawn; }
+
+    /**
+     * @param parallel true to run the work for each snake on many threads (the common fork-join pool)
+     */
+    public void setParallel(boolean parallel) { this.parallel = parallel; }
+
+    /**
+     * @param speed the speed of new snakes in dp/tick
+     */
+    public void setInitialSpeed(double speed) { this.initialSpeed = speed; }
+
+    /**
+     * @param speedIncreasePerFood the speed increase per food eaten, in dp/tick
+     */
+    public void setSpeedIncreasePerFood(double speedIncreasePerFood) { this.speedIncreasePerFood = speedIncreasePerFood; }
+
+    /**
+     * @param lengthIncreasePerFood the number of pieces added per food eaten
+     */
+    public void setLengthIncreasePerFood(int lengthIncreasePerFood) { this.lengthIncreasePerFood = lengthIncreasePerFood; }
+
+    /**
+     * @return the width of the world in px
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return the height of the world in px
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return the factor for converting dp measurements to px
+     */
+    @Override
+    public float getDpToPxFactor() { return dpToPxFactor; }
+
+    /**
+     * @return the number of snakes, alive or not
+     */
+    public int getSnakeCount() { return snakes.length; }
+
+    /**
+     * @param snake the index of a snake
+     * @return the snake, which should only be read
+     */
+    public Snake getSnake(int snake) { return snakes[snake]; }
+
+    /**
+     * @param snake the index of the snake
+     * @return the x coordinate of the snake's head, in px
+     */
+    @Override
+    public float getHeadX(int snake) { return snakes[snake].getBodyX(0); }
+
+    /**
+     * @param snake the index of the snake
+     * @return the y coordinate of the snake's head, in px
+     */
+    @Override
+    public float getHeadY(int snake) { return snakes[snake].getBodyY(0); }
+
+    /**
+     * @param snake the index of a snake
+     * @return true if the snake is alive
+     */
+    public boolean isAlive(int snake) { return alive[snake]; }
+
+    /**
+     * @param snake the index of a snake
+     * @return the number of foods the snake has eaten since it started
+     */
+    public int getScore(int snake) { return scores[snake]; }
+
+    /**
+     * @return the number of snakes alive
+     */
+    public int getAliveCount() { return aliveCount; }
+
+    /**
+     * @return the number of ticks so far
+     */
+    public long getTicks() { return ticks; }
+
+    /**
+     * @return the total number of body points of all of the snakes alive
+     */
+    public int getBodyPointCount() { return broadphase.size(); }
+
+    /**
+     * @return the number of foods
+     */
+    @Override
+    public int getFoodCount() { return foodX.length; }
+
+    /**
+     * @param i the index of a food
+     * @return the x coordinate of the food, in px
+     */
+    @Override
+    public float getFoodX(int i) { return foodX[i]; }
+
+    /**
+     * @param i the index of a food
+     * @return the y coordinate of the food, in px
+     */
+    @Override
+    public float getFoodY(int i) { return foodY[i]; }
+
+    /**
+     * Checks if a snake's head would hit something at a point. This only
+     * reads the arena (and the snake's own spatial index), so bots can call
+     * it for their own snake at the same time.
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @param snake the index of the snake
+     * @return true if the point is out of the world or a head there would hit the snake itself or another snake
+     */
+    @Override
+    public boolean isBlocked(float x, float y, int snake) {
+        return x < 0 || y < 0 || x >= width || y >= height ||
+                broadphase.anyOtherWithinRange(x, y, headRange(), snake) ||
+                snakes[snake].bodyIntersectsItem(x, y, 0);
+    }
+
+    /**
+     * Update the arena by a single tick.
+     * @return the number of snakes alive
+     */
+    public int update() {
+        runPhase(steerPhase);
+        runPhase(movePhase);
+        mergeLogs();
+        runPhase(collidePhase);
+        resolve();
+        ticks++;
+        return aliveCount;
+    }
+
+    /**
+     * Runs the work of a phase for every snake, on many threads if parallel.
+     * @param phase the work for a single snake
+     */
+    private void runPhase(IntConsumer phase) {
+        if (parallel) {
+            IntStream.range(0, snakes.length).parallel().forEach(phase);
+        } else {
+            for (int i = 0; i < snakes.length; i++) { phase.accept(i); }
+        }
+    }
+
+    /** Steer phase: a bot picks its snake's direction. */
+    private void steer(int i) {
+        if (alive[i] && bots[i] != null) { directions[i] = bots[i].steer(this, i); }
+    }
+
+    /** Move phase: a snake moves, logging its body changes. */
+    private void move(int i) {
+        if (alive[i]) { snakes[i].move(directions[i], speeds[i] * dpToPxFactor); }
+    }
+
+    /** Collide phase: a snake checks if it has died or is eating a food, anywhere along the path its head swept. */
+    private void collide(int i) {
+        dying[i] = false;
+        eating[i] = -1;
+        if (!alive[i]) { return; }
+        Snake snake = snakes[i];
+        if (snake.pathIntersectsSelf() || snake.headIsOutOfBounds(width, height) ||
+                broadphase.anyOtherWithinRangeOfSegment(snake.getPathStartX(), snake.getPathStartY(),
+                        snake.getBodyX(0), snake.getBodyY(0), headRange(), i)) {
+            dying[i] = true;
+            return;
+        }
+        final float radius = FOOD_SIZE_DP * dpToPxFactor;
+        for (int f = 0; f < foodX.length; f++) {
+            if (snake.pathIntersectsItem(foodX[f], foodY[f], radius)) {
+                eating[i] = f;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Resolve phase: removes the dead snakes (starting them again if
+     * respawning), and gives each eaten food to the first snake eating it.
+     */
+    private void resolve() {
+        for (int i = 0; i < snakes.length; i++) {
+            if (dying[i]) {
+                kill(i);
+            } else if (eating[i] >= 0) {
+                int f = eating[i];
+                if (Float.isNaN(foodX[f])) { continue; } // already eaten this tick
+                snakes[i].increaseLength(lengthIncreasePerFood);
+                speeds[i] += speedIncreasePerFood;
+                scores[i]++;
+                foodX[f] = Float.NaN;
+            }
+        }
+        for (int f = 0; f < foodX.length; f++) {
+            if (Float.isNaN(foodX[f])) { moveFood(f); }
+        }
+        if (respawn) {
+            for (int i = 0; i < snakes.length; i++) {
+                if (!alive[i]) { spawn(i); }
+            }
+            mergeLogs();
+        }
+    }
+
+    /**
+     * Removes a snake's body from the broadphase and marks it dead.
+     * @param i the index of the snake
+     */
+    private void kill(int i) {
+        Snake snake = snakes[i];
+        snake.setBodyListener(null);
+        for (int p = 0, n = snake.getBodySize(); p < n; p++) { broadphase.remove(i, snake.getBodyX(p), snake.getBodyY(p)); }
+        logs[i].clear();
+        alive[i] = false;
+        aliveCount--;
+    }
+
+    /**
+     * Starts a new snake at a random clear spot moving in a random direction.
+     * Its first body point is logged and must be merged afterwards.
+     * @param i the index of the snake
+     */
+    private void spawn(int i) {
+        float margin = 4 * Snake.BODY_PIECE_SIZE_DP * dpToPxFactor;
+        PointF start = new PointF();
+        for (int attempt = 0; attempt < PLACEMENT_ATTEMPTS; attempt++) {
+            start.set(margin + random.nextFloat() * (width - 2*margin), margin + random.nextFloat() * (height - 2*margin));
+            if (!broadphase.anyOtherWithinRange(start.x, start.y, margin, -1)) { break; }
+        }
+        snakes[i] = new Snake(start, dpToPxFactor, startingLength);
+        snakes[i].setBodyListener(logs[i]);
+        directions[i] = random.nextDouble() * 2 * Math.PI - Math.PI;
+        speeds[i] = initialSpeed;
+        scores[i] = 0;
+        alive[i] = true;
+        aliveCount++;
+    }
+
+    /**
+     * Moves a food to a random spot in the world, away from the snakes if a
+     * clear spot can be found quickly.
+     * @param f the index of the food
+     */
+    private void moveFood(int f) {
+        final float size = FOOD_SIZE_DP * dpToPxFactor;
+        final double range = (Snake.BODY_PIECE_SIZE_DP + 2*FOOD_SIZE_DP) * dpToPxFactor;
+        for (int attempt = 0; attempt < PLACEMENT_ATTEMPTS; attempt++) {
+            foodX[f] = random.nextFloat() * (width - 2*size) + size;
+            foodY[f] = random.nextFloat() * (height - 2*size) + size;
+            if (!broadphase.anyOtherWithinRange(foodX[f], foodY[f], range, -1)) { return; }
+        }
+    }
+
+    /** Merge phase: applies every snake's logged body changes to the broadphase, in snake order. */
+    private void mergeLogs() {
+        for (int i = 0; i < snakes.length; i++) { logs[i].applyTo(broadphase, i); }
+    }
+
+    /**
+     * @return the distance from a head to a body point of another snake that counts as a hit, in px
+     */
+    private double headRange() { return Snake.BODY_PIECE_SIZE_DP * dpToPxFactor; }
+
+    /**
+     * The body points a snake added and removed since the last merge. Each
+     * snake has its own log so they can move on different threads, and the
+     * logs are applied to the shared broadphase afterwards on one thread.
+     */
+    private static final class BodyLog implements Snake.BodyListener {
+        /** The changes: the coordinates and if each added (true) or removed (false) a point */
+        private float[] xs = new float[16], ys = new float[16];
+        private boolean[] added = new boolean[16];
+        private int count = 0;
+
+        @Override
+        public void onPieceAdded(float x, float y) { log(x, y, true); }
+
+        @Override
+        public void onPieceRemoved(float x, float y) { log(x, y, false); }
+
+        private void log(float x, float y, boolean add) {
+            if (count == xs.length) {
+                xs = Arrays.copyOf(xs, count * 2);
+                ys = Arrays.copyOf(ys, count * 2);
+                added = Arrays.copyOf(added, count * 2);
+            }
+            xs[count] = x;
+            ys[count] = y;
+            added[count] = add;
+            count++;
+        }
+
+        /**
+         * Applies the changes in the order they happened and then clears them.
+         * @param broadphase the broadphase to change
+         * @param snake the index of the snake the changes are for
+         */
+        void applyTo(ArenaBroadphase broadphase, int snake) {
+            for (int i = 0; i < count; i++) {
+                if (added[i]) { broadphase.insert(snake, xs[i], ys[i]); }
+                else { broadphase.remove(snake, xs[i], ys[i]); }
+            }
+            count = 0;
+        }
+
+        void clear() { count = 0; }
+    }
+}
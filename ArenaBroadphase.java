@@ -0,0 +1,197 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Arrays;
+
+/**
+ * The broadphase shared by all of the snakes in an Arena: a uniform grid over
+ * the world where each cell has a list of the body points in it along with
+ * which snake each point belongs to. Unlike SpatialGrid the cells are not
+ * hashed into buckets, so every cell is looked at once per query without
+ * keeping track of the visited buckets, and the queries do not change
+ * anything. That means any number of threads can query at once, as long as
+ * nothing is being added or removed at the same time.
+ *
+ * Points outside of the world are kept in the nearest cell on the edge.
+ */
+public class ArenaBroadphase {
+    /** Initial number of points each cell can hold */
+    private final static int INITIAL_CELL_CAPACITY = 4;
+
+    /** The width and height of each cell, in px */
+    private final float cellSize;
+
+    /** The number of columns and rows of cells */
+    private final int cols, rows;
+
+    /** The snake and coordinates of the points in each cell */
+    private final int[][] snakes;
+    private final float[][] xs, ys;
+
+    /** The number of points in each cell */
+    private final int[] counts;
+
+    /** The total number of points */
+    private int size = 0;
+
+    /**
+     * Create an empty broadphase.
+     * @param width the width of the world, in px
+     * @param height the height of the world, in px
+     * @param cellSize the width and height of each cell, in px, usually about the size of the ranges that will be
+     *                 queried
+     */
+    public ArenaBroadphase(int width, int height, float cellSize) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        snakes = new int[cols * rows][];
+        xs = new float[cols * rows][];
+        ys = new float[cols * rows][];
+        counts = new int[cols * rows];
+    }
+
+    /**
+     * @return the number of points
+     */
+    public int size() { return size; }
+
+    /**
+     * Add a body point.
+     * @param snake the snake the point belongs to
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     */
+    public void insert(int snake, float x, float y) {
+        int cell = cellOf(x, y);
+        int count = counts[cell];
+        if (snakes[cell] == null) {
+            snakes[cell] = new int[INITIAL_CELL_CAPACITY];
+            xs[cell] = new float[INITIAL_CELL_CAPACITY];
+            ys[cell] = new float[INITIAL_CELL_CAPACITY];
+        } else if (count == snakes[cell].length) {
+            snakes[cell] = Arrays.copyOf(snakes[cell], count * 2);
+            xs[cell] = Arrays.copyOf(xs[cell], count * 2);
+            ys[cell] = Arrays.copyOf(ys[cell], count * 2);
+        }
+        snakes[cell][count] = snake;
+        xs[cell][count] = x;
+        ys[cell][count] = y;
+        counts[cell] = count + 1;
+        size++;
+    }
+
+    /**
+     * Remove a body point. The coordinates must be the same as the ones the
+     * point was added with.
+     * @param snake the snake the point belongs to
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @return true if the point was found and removed
+     */
+    public boolean remove(int snake, float x, float y) {
+        int cell = cellOf(x, y);
+        int[] cellSnakes = snakes[cell];
+        float[] cellXs = xs[cell], cellYs = ys[cell];
+        int last = counts[cell] - 1;
+        for (int i = last; i >= 0; i--) {
+            if (cellSnakes[i] == snake && cellXs[i] == x && cellYs[i] == y) {
+                // Swap the last point in the cell into this spot
+                cellSnakes[i] = cellSnakes[last];
+                cellXs[i] = cellXs[last];
+                cellYs[i] = cellYs[last];
+                counts[cell] = last;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any body point of a snake other than the given one is within
+     * range of a point. This does not change anything so it can be called
+     * from many threads at once.
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @param range the maximum distance allowed, in px
+     * @param exclude the snake whose points are ignored, -1 for none
+     * @return true if any point of another snake is closer than range to x, y
+     */
+    public boolean anyOtherWithinRange(float x, float y, double range, int exclude) {
+        final double rangeSq = range*range;
+        final int minX = col((float) (x - range)), maxX = col((float) (x + range));
+        final int minY = row((float) (y - range)), maxY = row((float) (y + range));
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cell = cy * cols + minX, end = cy * cols + maxX; cell <= end; cell++) {
+                int[] cellSnakes = snakes[cell];
+                float[] cellXs = xs[cell], cellYs = ys[cell];
+                for (int i = counts[cell] - 1; i >= 0; i--) {
+                    float dx = cellXs[i] - x, dy = cellYs[i] - y;
+                    if (dx*dx + dy*dy < rangeSq && cellSnakes[i] != exclude) { return true; }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any body point of a snake other than the given one is within
+     * range of any point on a line segment, for example the path a head swept
+     * in one tick. Only the cells that the range around the segment covers
+     * are looked at, row by row, so the cost grows with the length of the
+     * segment in cells and not with the number of points along it. This does
+     * not change anything so it can be called from many threads at once.
+     * @param x0 the x coordinate of the start of the segment, in px
+     * @param y0 the y coordinate of the start of the segment, in px
+     * @param x1 the x coordinate of the end of the segment, in px
+     * @param y1 the y coordinate of the end of the segment, in px
+     * @param range the maximum distance allowed, in px
+     * @param exclude the snake whose points are ignored, -1 for none
+     * @return true if any point of another snake is closer than range to the segment
+     */
+    public boolean anyOtherWithinRangeOfSegment(float x0, float y0, float x1, float y1, double range, int exclude) {
+        final double dx = x1 - x0, dy = y1 - y0;
+        final int minY = row((float) (Math.min(y0, y1) - range)), maxY = row((float) (Math.max(y0, y1) + range));
+        for (int cy = minY; cy <= maxY; cy++) {
+            // The part of the segment close enough to this row of cells to reach into it (the rows on the edges
+            // also hold the points past the edge of the world, so they reach out forever)
+            double t0 = 0, t1 = 1;
+            if (dy != 0) {
+                double top = cy == 0 ? Double.NEGATIVE_INFINITY : cy * cellSize - range;
+                double bottom = cy == rows - 1 ? Double.POSITIVE_INFINITY : (cy + 1) * cellSize + range;
+                double ta = (top - y0) / dy, tb = (bottom - y0) / dy;
+                t0 = Math.max(0, Math.min(ta, tb));
+                t1 = Math.min(1, Math.max(ta, tb));
+                if (t0 > t1) { continue; }
+            }
+            double xa = x0 + t0 * dx, xb = x0 + t1 * dx;
+            final int minX = col((float) (Math.min(xa, xb) - range)), maxX = col((float) (Math.max(xa, xb) + range));
+            for (int cell = cy * cols + minX, end = cy * cols + maxX; cell <= end; cell++) {
+                int[] cellSnakes = snakes[cell];
+                float[] cellXs = xs[cell], cellYs = ys[cell];
+                for (int i = counts[cell] - 1; i >= 0; i--) {
+                    if (cellSnakes[i] != exclude &&
+                            Util.withinRangeOfSegment(cellXs[i], cellYs[i], x0, y0, x1, y1, range)) { return true; }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the cell the point is in, using the nearest cell on the edge for points outside the world
+     */
+    private int cellOf(float x, float y) { return row(y) * cols + col(x); }
+
+    /**
+     * @param x an x coordinate, in px
+     * @return the column the coordinate is in, clamped to the world
+     */
+    private int col(float x) { return Math.max(0, Math.min(cols - 1, (int) Math.floor(x / cellSize))); }
+
+    /**
+     * @param y a y coordinate, in px
+     * @return the row the coordinate is in, clamped to the world
+     */
+    private int row(float y) { return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize))); }
+}
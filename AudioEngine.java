@@ -0,0 +1,155 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.MediaPlayer;
+import android.media.SoundPool;
+
+/**
+ * The app-wide audio: the background music and the sound effects. There is a
+ * single MediaPlayer for the music that is created (and the track decoded)
+ * once and shared by every Activity, so the music keeps playing while moving
+ * from one Activity to the next.
+ *
+ * Each Activity calls startMusic() in onStart() and stopMusic() in onStop().
+ * The next Activity starts before the last one stops, so the music only
+ * pauses when no Activity is showing (the app is in the background).
+ *
+ * The sound effects are short clips preloaded into a SoundPool so playing one
+ * is a non-blocking call that can be made from the game thread. The effects
+ * are looked up by name in res/raw (food_eaten, wall_cleared, and death); any
+ * that are missing are simply not played. This listens to the SnakeGame to
+ * know when to play them.
+ *
+ * Only the music is guarded by the engine's lock, since creating the player
+ * decodes the track and can take a while. Playing an effect never takes the
+ * lock: the pool and the effect ids are final and soundOn is volatile, so
+ * effects can be played from a game thread without waiting on the music.
+ */
+public class AudioEngine implements SnakeGame.Listener {
+    /** The names of the raw resources for each effect */
+    private final static String FOOD_EATEN = "food_eaten", WALL_CLEARED = "wall_cleared", DEATH = "death";
+
+    /** The most effects that can play at once */
+    private final static int MAX_EFFECT_STREAMS = 4;
+
+    /** The one and only engine */
+    private static AudioEngine instance;
+
+    /** The application context, used to create the music player */
+    private final Context context;
+
+    /** The player for the music, created the first time it is needed */
+    private MediaPlayer music;
+
+    /** The pool of preloaded effects and the sound id of each effect (0 if missing) */
+    private final SoundPool effects;
+    private final int foodEatenSound, wallClearedSound, deathSound;
+
+    /** The number of Activities that are started and want music */
+    private int musicUsers = 0;
+
+    /** If sound is on (from the sound switch), read without the lock when playing effects */
+    private volatile boolean soundOn = true;
+
+    /**
+     * Gets the one and only engine, creating it (and loading the effects) if
+     * needed.
+     * @param context any context from the app
+     * @return the engine
+     */
+    public static synchronized AudioEngine getInstance(Context context) {
+        if (instance == null) { instance = new AudioEngine(context.getApplicationContext()); }
+        return instance;
+    }
+
+    private AudioEngine(Context context) {
+        this.context = context;
+        effects = new SoundPool.Builder()
+                .setMaxStreams(MAX_EFFECT_STREAMS)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(AudioAttributes.USAGE_GAME)
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                        .build())
+                .build();
+        foodEatenSound = loadEffect(FOOD_EATEN);
+        wallClearedSound = loadEffect(WALL_CLEARED);
+        deathSound = loadEffect(DEATH);
+    }
+
+    /**
+     * Starts loading an effect in the background.
+     * @param name the name of the raw resource
+     * @return the sound id of the effect, 0 if there is no such resource
+     */
+    private int loadEffect(String name) {
+        int resource = context.getResources().getIdentifier(name, "raw", context.getPackageName());
+        return resource == 0 ? 0 : effects.load(context, resource, 1);
+    }
+
+    /**
+     * @return true if sound is on
+     */
+    public boolean isSoundOn() { return soundOn; }
+
+    /**
+     * Turns the music and effects on or off. The music starts right away if
+     * an Activity wants it.
+     * @param soundOn true for sound to be on
+     */
+    public synchronized void setSoundOn(boolean soundOn) {
+        this.soundOn = soundOn;
+        updateMusic();
+    }
+
+    /**
+     * Called by each Activity in onStart(): the music plays (if sound is on)
+     * while at least one Activity is started.
+     */
+    public synchronized void startMusic() {
+        musicUsers++;
+        updateMusic();
+    }
+
+    /**
+     * Called by each Activity in onStop(), after startMusic().
+     */
+    public synchronized void stopMusic() {
+        if (musicUsers > 0) { musicUsers--; }
+        updateMusic();
+    }
+
+    /**
+     * Plays or pauses the music to match what is wanted, creating the player
+     * the first time the music plays.
+     */
+    private void updateMusic() {
+        boolean wanted = soundOn && musicUsers > 0;
+        if (wanted && music == null) {
+            music = MediaPlayer.create(context, R.raw.booamf);
+            if (music == null) { return; } // could not be decoded
+            music.setLooping(true);
+        }
+        if (music == null) { return; }
+        if (wanted && !music.isPlaying()) { music.start(); }
+        else if (!wanted && music.isPlaying()) { music.pause(); }
+    }
+
+    /**
+     * Plays an effect if sound is on and the effect exists and is loaded. SoundPool is thread-safe, so this does not
+     * take the lock.
+     * @param sound the sound id of the effect
+     */
+    private void playEffect(int sound) {
+        if (soundOn && sound != 0) { effects.play(sound, 1f, 1f, 1, 0, 1f); }
+    }
+
+    @Override
+    public void onFoodEaten() { playEffect(foodEatenSound); }
+
+    @Override
+    public void onWallsCleared(int count) { playEffect(wallClearedSound); }
+
+    @Override
+    public void onGameOver() { playEffect(deathSound); }
+}
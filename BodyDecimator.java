@@ -0,0 +1,115 @@
+package edu.moravian.csci299.gravitysnake;
+
+/**
+ * Picks the body points of a snake that are actually worth drawing. Body
+ * points are only a step apart but the body is drawn as a line as wide as a
+ * body piece, so along straight stretches almost all of them can be skipped
+ * without changing what is on screen. A point is skipped when the line that
+ * goes around it stays within a tolerance of it, so curves keep more points
+ * than straight stretches.
+ *
+ * The points picked are also limited to a budget: when the snake is very long
+ * every line covers at least length / maxPoints points, even if that means
+ * going over the tolerance, so the number of points drawn stays about the same
+ * no matter how long the snake gets.
+ *
+ * The search doubles the number of points a line covers until it goes over
+ * the tolerance, so picking the points takes time proportional to the number
+ * of body points no matter how many are skipped.
+ */
+public class BodyDecimator {
+    /** Default distance a skipped point may be from the line drawn around it, in px */
+    public final static float DEFAULT_TOLERANCE_PX = 1f;
+
+    /** Default most points to pick */
+    public final static int DEFAULT_MAX_POINTS = 512;
+
+    /** The most points a single line covers (unless required by the budget), must be a power of 2 */
+    private final static int MAX_SPAN = 64;
+
+    private float tolerance = DEFAULT_TOLERANCE_PX;
+    private int maxPoints = DEFAULT_MAX_POINTS;
+
+    /** The indices of the picked points, from the tail to the head */
+    private int[] indices = new int[DEFAULT_MAX_POINTS + 2];
+
+    /**
+     * @return the distance a skipped point may be from the line drawn around it, in px
+     */
+    public float getTolerance() { return tolerance; }
+
+    /**
+     * @param tolerance the distance a skipped point may be from the line drawn around it, in px, 0 to keep every
+     *                  point that is not exactly on a straight line
+     */
+    public void setTolerance(float tolerance) { this.tolerance = tolerance; }
+
+    /**
+     * @return the most points to pick
+     */
+    public int getMaxPoints() { return maxPoints; }
+
+    /**
+     * @param maxPoints the most points to pick (about, the first and last are always picked), at least 1
+     */
+    public void setMaxPoints(int maxPoints) { this.maxPoints = Math.max(1, maxPoints); }
+
+    /**
+     * Picks the points to draw between two body points of a frame's snake.
+     * The picked points are available from getIndices().
+     * @param frame the frame with the snake
+     * @param tail the index of the body point the drawing starts at (the larger index)
+     * @param head the index of the body point the drawing ends at (the smaller index)
+     * @return the number of points picked, always including tail and head
+     */
+    public int decimate(FrameSnapshot frame, int tail, int head) {
+        int minSpan = Math.max(1, (tail - head + maxPoints - 1) / maxPoints);
+        if (indices.length < (tail - head) / minSpan + 2) { indices = new int[(tail - head) / minSpan + 2]; }
+        final double tolSq = (double) tolerance * tolerance;
+        int count = 0;
+        int anchor = tail;
+        indices[count++] = anchor;
+        while (anchor > head) {
+            // Always cover at least minSpan points, then keep doubling while the line stays within the tolerance
+            int span = Math.min(minSpan, anchor - head);
+            int maxSpan = Math.max(minSpan, MAX_SPAN);
+            while (span < anchor - head && span < maxSpan) {
+                int next = Math.min(Math.min(span * 2, maxSpan), anchor - head);
+                if (!withinTolerance(frame, anchor, anchor - next, tolSq)) { break; }
+                span = next;
+            }
+            anchor -= span;
+            indices[count++] = anchor;
+        }
+        return count;
+    }
+
+    /**
+     * @return the indices of the body points picked by the last call to decimate(), from the tail to the head; only
+     *         the number of elements returned by that call are valid
+     */
+    public int[] getIndices() { return indices; }
+
+    /**
+     * Checks if all of the body points between two body points are within the
+     * tolerance of the line between them.
+     * @param frame the frame with the snake
+     * @param from the index of the first body point (the larger index)
+     * @param to the index of the last body point (the smaller index)
+     * @param tolSq the tolerance squared, in px^2
+     * @return true if every body point strictly between from and to is close enough to the line
+     */
+    private static boolean withinTolerance(FrameSnapshot frame, int from, int to, double tolSq) {
+        float ax = frame.getBodyX(from), ay = frame.getBodyY(from);
+        double dx = frame.getBodyX(to) - ax, dy = frame.getBodyY(to) - ay;
+        double lenSq = dx*dx + dy*dy;
+        for (int i = from - 1; i > to; i--) {
+            double px = frame.getBodyX(i) - ax, py = frame.getBodyY(i) - ay;
+            // Distance from the point to the closest point on the segment
+            double t = lenSq == 0 ? 0 : Math.max(0, Math.min(1, (px*dx + py*dy) / lenSq));
+            double ex = px - t*dx, ey = py - t*dy;
+            if (ex*ex + ey*ey > tolSq) { return false; }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,70 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands FrameSnapshots from the simulation to the renderer without locks,
+ * using three snapshots: one the simulation is writing into, one the
+ * renderer is drawing from, and one waiting in between holding the latest
+ * finished frame. Publishing swaps the written snapshot with the waiting one
+ * and reading swaps the drawn snapshot with the waiting one (if it is newer),
+ * each a single atomic operation, so neither side ever waits for the other or
+ * sees a half-written frame. If the simulation publishes several times
+ * between frames the renderer just gets the latest.
+ *
+ * publish() must only be called from one thread (the one updating the game)
+ * and latest() from one thread (the one drawing), which may be the same.
+ */
+public final class FrameExchange {
+    /** The bit set in the waiting index when it holds a frame the renderer has not taken yet */
+    private final static int FRESH = 4;
+
+    /** The three snapshots */
+    private final FrameSnapshot[] snapshots = {
+            new FrameSnapshot(this), new FrameSnapshot(this), new FrameSnapshot(this)
+    };
+
+    /** The index of the waiting snapshot, with FRESH set if it was published after the renderer last took one */
+    private final AtomicInteger waiting = new AtomicInteger(0);
+
+    /** The index of the snapshot being written, only used by the simulation's thread */
+    private int writing = 1;
+
+    /** The index of the snapshot being drawn, only used by the renderer's thread */
+    private int drawing = 2;
+
+    /** The game and its version at the last publish, only used by the simulation's thread */
+    private SnakeGame publishedGame;
+    private int publishedVersion;
+
+    /**
+     * Copies the current state of a game into a snapshot and makes it the
+     * latest frame. Called by the simulation after it updates the game.
+     * @param game the game, which must have been started
+     */
+    public void publish(SnakeGame game) {
+        snapshots[writing].copyFrom(game);
+        writing = waiting.getAndSet(writing | FRESH) & ~FRESH;
+        publishedGame = game;
+        publishedVersion = game.getVersion();
+    }
+
+    /**
+     * Checks if a game has changed in a way that needs a new frame even
+     * though it has not been updated, for example when a touch removed walls
+     * or the game was restored. Called by the simulation.
+     * @param game the game
+     * @return true if the game needs to be published
+     */
+    public boolean isStale(SnakeGame game) { return game != publishedGame || game.getVersion() != publishedVersion; }
+
+    /**
+     * Gets the latest published frame. The snapshot returned does not change
+     * until the next call to this method. Called by the renderer.
+     * @return the latest frame, which is empty (with a body size of 0) if nothing has been published yet
+     */
+    public FrameSnapshot latest() {
+        if ((waiting.get() & FRESH) != 0) { drawing = waiting.getAndSet(drawing) & ~FRESH; }
+        return snapshots[drawing];
+    }
+}
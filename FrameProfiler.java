@@ -0,0 +1,208 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Times each phase of a frame (moving the snake, collision checks, placing
+ * food and walls, and the different parts of drawing) and keeps a histogram
+ * of the times for each phase. The histograms are preallocated and lock-free
+ * so recording a time never allocates or blocks, and can be done from any
+ * thread.
+ *
+ * Timing a phase looks like:
+ * <pre>
+ *     long start = FrameProfiler.start();
+ *     ... the phase ...
+ *     FrameProfiler.end(FrameProfiler.MOVE, start);
+ * </pre>
+ * When the profiler is disabled (the default) start() returns 0 without
+ * reading the clock and end() returns immediately, so the cost is a single
+ * field read.
+ */
+public final class FrameProfiler {
+    /** The phases that are timed */
+    public final static int MOVE = 0, COLLISIONS = 1, PLACEMENT = 2, DRAW_SNAKE = 3, DRAW_WALLS = 4, DRAW_SCORE = 5,
+            FRAME = 6, PHASE_COUNT = 7;
+
+    /** The names of the phases, in order */
+    private final static String[] NAMES = {
+            "move", "collisions", "placement", "drawSnake", "drawWalls", "drawScore", "frame"
+    };
+
+    /** If times are being recorded, set on the UI thread and read on the game thread of a SnakeSurfaceView */
+    private static volatile boolean enabled = false;
+
+    /** The histogram of the times for each phase */
+    private final static Histogram[] histograms = new Histogram[PHASE_COUNT];
+    static {
+        for (int i = 0; i < PHASE_COUNT; i++) { histograms[i] = new Histogram(); }
+    }
+
+    private FrameProfiler() { }
+
+    /**
+     * @return true if times are being recorded
+     */
+    public static boolean isEnabled() { return enabled; }
+
+    /**
+     * @param enabled true to start recording times, false to stop
+     */
+    public static void setEnabled(boolean enabled) { FrameProfiler.enabled = enabled; }
+
+    /**
+     * Start timing a phase.
+     * @return the current time in ns, or 0 if the profiler is disabled
+     */
+    public static long start() { return enabled ? System.nanoTime() : 0; }
+
+    /**
+     * Finish timing a phase and record the time.
+     * @param phase the phase that was timed
+     * @param start the value returned by start() at the beginning of the phase
+     */
+    public static void end(int phase, long start) {
+        if (start != 0) { histograms[phase].record(System.nanoTime() - start); }
+    }
+
+    /**
+     * @param phase one of the phases
+     * @return the name of the phase
+     */
+    public static String getName(int phase) { return NAMES[phase]; }
+
+    /**
+     * @param phase one of the phases
+     * @return the number of times recorded for the phase
+     */
+    public static long getCount(int phase) { return histograms[phase].getCount(); }
+
+    /**
+     * Gets a percentile of the times of a phase. The result is accurate to
+     * within about 6%.
+     * @param phase one of the phases
+     * @param percentile the percentile, from 0 to 100
+     * @return the time at that percentile in ns, 0 if no times are recorded
+     */
+    public static long getPercentile(int phase, double percentile) { return histograms[phase].getPercentile(percentile); }
+
+    /**
+     * @param phase one of the phases
+     * @return the longest time recorded for the phase in ns
+     */
+    public static long getMax(int phase) { return histograms[phase].getMax(); }
+
+    /**
+     * Forget all of the recorded times.
+     */
+    public static void reset() {
+        for (Histogram histogram : histograms) { histogram.reset(); }
+    }
+
+    /**
+     * Gets a summary line for a phase with the count, p50, p95, p99, and max
+     * times in microseconds.
+     * @param phase one of the phases
+     * @return the summary
+     */
+    public static String summary(int phase) {
+        return String.format(Locale.US, "%-10s n=%-7d p50=%7.1f p95=%7.1f p99=%7.1f max=%7.1f",
+                NAMES[phase], getCount(phase), getPercentile(phase, 50) / 1e3, getPercentile(phase, 95) / 1e3,
+                getPercentile(phase, 99) / 1e3, getMax(phase) / 1e3);
+    }
+
+    /**
+     * Writes the summary of every phase to a file, replacing it.
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public static void dump(File file) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            out.write("phase times in us\n");
+            for (int phase = 0; phase < PHASE_COUNT; phase++) {
+                out.write(summary(phase));
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * A histogram of times with buckets that grow exponentially: each power of
+     * 2 is split into SUB_BUCKETS equal buckets. The counts are atomic so any
+     * number of threads can record at once.
+     */
+    static final class Histogram {
+        /** Number of buckets per power of 2, must be a power of 2 */
+        private final static int SUB_BUCKETS = 8;
+        private final static int SUB_BITS = 3;
+
+        /** Number of buckets in total, enough for times up to 2^40 ns (about 18 minutes) */
+        private final static int BUCKETS = (40 - SUB_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * @param value a time in ns
+         */
+        void record(long value) {
+            if (value < 0) { value = 0; }
+            counts.incrementAndGet(bucket(value));
+            count.incrementAndGet();
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) { }
+        }
+
+        /**
+         * @param value a time in ns
+         * @return the bucket the time goes in
+         */
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) { return (int) value; }
+            int exponent = 63 - Long.numberOfLeadingZeros(value); // at least SUB_BITS
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return Math.min((exponent - SUB_BITS + 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+        }
+
+        /**
+         * @param bucket a bucket
+         * @return the middle of the range of times in the bucket, in ns
+         */
+        private static long middleOf(int bucket) {
+            if (bucket < SUB_BUCKETS) { return bucket; }
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            long low = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+            return low + (1L << (exponent - SUB_BITS)) / 2;
+        }
+
+        long getCount() { return count.get(); }
+
+        long getMax() { return max.get(); }
+
+        long getPercentile(double percentile) {
+            long total = count.get();
+            if (total == 0) { return 0; }
+            long target = (long) Math.ceil(percentile / 100 * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= target && seen > 0) { return Math.min(middleOf(i), max.get()); }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++) { counts.set(i, 0); }
+            count.set(0);
+            max.set(0);
+        }
+    }
+}
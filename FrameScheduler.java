@@ -0,0 +1,210 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Locale;
+
+/**
+ * Decides when the game view needs another frame, so that nothing is drawn
+ * while nothing is changing. The scheduler is in one of three states:
+ * <ul>
+ *     <li>RUNNING: the game is being played, every display frame is drawn</li>
+ *     <li>GAME_OVER: the game has ended, one last frame is drawn to show the
+ *     end of the game and then frames stop</li>
+ *     <li>PAUSED: the Activity is paused, the game is not updated and frames
+ *     stop</li>
+ * </ul>
+ * While not RUNNING frames are still drawn while an animation is playing, for
+ * example for a short while after a touch (see wake()) so anything the touch
+ * changed is shown.
+ *
+ * Using it looks like:
+ * <pre>
+ *     // at the end of each frame
+ *     if (scheduler.onFrame(now, game.isGameOver())) { ... request the next frame ... }
+ *     // on a touch or other event that could change what is shown
+ *     if (scheduler.wake(now)) { ... request a frame ... }
+ * </pre>
+ * The scheduler also counts the frames drawn and the time spent in each state
+ * so the frames per second of each state can be checked, which should be near
+ * the display rate while RUNNING and near 0 otherwise.
+ *
+ * This must only be used from the thread that draws the frames.
+ */
+public class FrameScheduler {
+    /** The states */
+    public final static int RUNNING = 0, GAME_OVER = 1, PAUSED = 2, STATE_COUNT = 3;
+
+    /** The names of the states, in order */
+    private final static String[] NAMES = { "running", "gameOver", "paused" };
+
+    /** The default amount of time to keep drawing frames after a wake(), in ns */
+    public final static long DEFAULT_WAKE_NS = 100_000_000L;
+
+    /** The amount of time to keep drawing frames after a wake(), in ns */
+    private long wakeNanos = DEFAULT_WAKE_NS;
+
+    /** The current state */
+    private int state = RUNNING;
+
+    /** If a frame has been requested and not drawn yet */
+    private boolean frameRequested = false;
+
+    /** The time that frames can stop after an animation, in ns */
+    private long animateUntil = Long.MIN_VALUE;
+
+    /** The number of frames drawn and the time spent (in ns) in each state */
+    private final long[] frames = new long[STATE_COUNT];
+    private final long[] nanos = new long[STATE_COUNT];
+
+    /** The time the current state was entered, in ns, or -1 if not known yet */
+    private long stateStart = -1;
+
+    /**
+     * @return the current state, one of RUNNING, GAME_OVER, and PAUSED
+     */
+    public int getState() { return state; }
+
+    /**
+     * @return true if the Activity is paused and the game should not be updated
+     */
+    public boolean isPaused() { return state == PAUSED; }
+
+    /**
+     * @param state one of the states
+     * @return the name of the state
+     */
+    public static String getName(int state) { return NAMES[state]; }
+
+    /**
+     * @param wakeNanos the amount of time to keep drawing frames after a wake(), in ns
+     */
+    public void setWakeNanos(long wakeNanos) { this.wakeNanos = wakeNanos; }
+
+    /**
+     * Called once a frame has been drawn (or at least updated), this records
+     * the frame and decides if there should be another one.
+     * @param now the current time in ns
+     * @param gameOver true if the game is over (or not started yet)
+     * @return true if the next frame should be requested
+     */
+    public boolean onFrame(long now, boolean gameOver) {
+        if (state != PAUSED) { setState(gameOver ? GAME_OVER : RUNNING, now); }
+        frames[state]++;
+        frameRequested = state == RUNNING || now < animateUntil;
+        return frameRequested;
+    }
+
+    /**
+     * Wakes up the frames because of a touch or some other event, drawing
+     * frames for a short while even if the game is not running.
+     * @param now the current time in ns
+     * @return true if a frame needs to be requested (none is already coming)
+     */
+    public boolean wake(long now) { return animate(now, wakeNanos); }
+
+    /**
+     * Keeps drawing frames until an animation is done, even if the game is
+     * not running.
+     * @param now the current time in ns
+     * @param durationNanos the length of the animation, in ns
+     * @return true if a frame needs to be requested (none is already coming)
+     */
+    public boolean animate(long now, long durationNanos) {
+        animateUntil = Math.max(animateUntil, now + durationNanos);
+        return requestFrame();
+    }
+
+    /**
+     * Called when the Activity is paused. Frames stop after any that is
+     * already coming.
+     * @param now the current time in ns
+     */
+    public void pause(long now) { setState(PAUSED, now); }
+
+    /**
+     * Called when the Activity is resumed. The SimulationClock must be reset
+     * as well so the paused time is not simulated.
+     * @param now the current time in ns
+     * @return true if a frame needs to be requested (none is already coming)
+     */
+    public boolean resume(long now) {
+        if (state == PAUSED) { setState(RUNNING, now); } // the next frame moves to GAME_OVER if the game is over
+        return requestFrame();
+    }
+
+    /**
+     * Called when a requested frame will not be drawn after all (for example
+     * the frame callback was removed), so the next request is not skipped.
+     */
+    public void cancelFrame() { frameRequested = false; }
+
+    /**
+     * Marks that a frame is being requested.
+     * @return true if a frame needs to be requested, false if one was already
+     */
+    private boolean requestFrame() {
+        if (frameRequested) { return false; }
+        frameRequested = true;
+        return true;
+    }
+
+    /**
+     * Moves to a state, adding the time spent in the old state to its total.
+     * @param newState the new state
+     * @param now the current time in ns
+     */
+    private void setState(int newState, long now) {
+        if (stateStart >= 0) { nanos[state] += Math.max(0, now - stateStart); }
+        stateStart = now;
+        state = newState;
+    }
+
+    /**
+     * @param state one of the states
+     * @return the number of frames drawn in the state
+     */
+    public long getFrameCount(int state) { return frames[state]; }
+
+    /**
+     * @param state one of the states
+     * @param now the current time in ns
+     * @return the total time spent in the state, in ns
+     */
+    public long getNanos(int state, long now) {
+        long total = nanos[state];
+        if (state == this.state && stateStart >= 0) { total += Math.max(0, now - stateStart); }
+        return total;
+    }
+
+    /**
+     * @param state one of the states
+     * @param now the current time in ns
+     * @return the average frames drawn per second while in the state, or 0 if no time has been spent in the state
+     */
+    public double getFramesPerSecond(int state, long now) {
+        long time = getNanos(state, now);
+        return time == 0 ? 0 : frames[state] * 1e9 / time;
+    }
+
+    /**
+     * Forgets all of the frame counts and times.
+     * @param now the current time in ns
+     */
+    public void resetCounts(long now) {
+        for (int i = 0; i < STATE_COUNT; i++) { frames[i] = 0; nanos[i] = 0; }
+        if (stateStart >= 0) { stateStart = now; }
+    }
+
+    /**
+     * Gets a summary with the frames per second, frames and time of each state.
+     * @param now the current time in ns
+     * @return the summary, one line per state
+     */
+    public String summary(long now) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < STATE_COUNT; i++) {
+            sb.append(String.format(Locale.US, "%-10s fps=%6.1f frames=%-7d seconds=%.1f%n",
+                    NAMES[i], getFramesPerSecond(i, now), frames[i], getNanos(i, now) / 1e9));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package edu.moravian.csci299.gravitysnake;
+
+/**
+ * Everything needed to draw one frame of a SnakeGame, copied out of the game
+ * after it updates: the body points, the walls, the food, the score, and a
+ * few flags. Snapshots are handed from the simulation to the renderer through
+ * a FrameExchange, so the renderer never reads the live game and the game can
+ * be updated on another thread while a frame is being drawn.
+ *
+ * A snapshot does not change while the renderer has it. The arrays are reused
+ * from one snapshot to the next (they only grow when the snake or the number
+ * of walls outgrows them) so publishing and reading snapshots do not allocate.
+ */
+public final class FrameSnapshot {
+    /** Initial number of body points and walls each snapshot can hold */
+    private final static int INITIAL_BODY_CAPACITY = 1024, INITIAL_WALL_CAPACITY = 64;
+
+    /** The exchange this snapshot belongs to */
+    final FrameExchange exchange;
+
+    /** The body points, from the tail to the head, in px */
+    private float[] bodyX = new float[INITIAL_BODY_CAPACITY], bodyY = new float[INITIAL_BODY_CAPACITY];
+    private int bodySize = 0;
+
+    /** The walls, in px */
+    private float[] wallX = new float[INITIAL_WALL_CAPACITY], wallY = new float[INITIAL_WALL_CAPACITY];
+    private int wallCount = 0;
+
+    /** The location of the snake's head before the last update, in px */
+    private float previousHeadX, previousHeadY;
+
+    /** The location of the food, in px */
+    private float foodX, foodY;
+
+    private int score;
+    private int version = -1;
+    private int stepsLastUpdate;
+    private boolean gameOver = true;
+
+    /** The game the walls, food, and score were last copied from, so they are only copied when they change */
+    private SnakeGame copiedFrom;
+
+    /**
+     * @param exchange the exchange the snapshot belongs to
+     */
+    FrameSnapshot(FrameExchange exchange) { this.exchange = exchange; }
+
+    /**
+     * Copies the state of a game into this snapshot. The walls, food, and
+     * score are only copied if the game's version is different from when
+     * they were last copied into this snapshot.
+     * @param game the game to copy, which must have been started
+     */
+    void copyFrom(SnakeGame game) {
+        bodySize = game.getSnakeBodySize();
+        if (bodyX.length < bodySize) {
+            int capacity = Math.max(bodySize, bodyX.length * 2);
+            bodyX = new float[capacity];
+            bodyY = new float[capacity];
+        }
+        game.copySnakeBody(bodyX, bodyY);
+        previousHeadX = game.getPreviousHeadX();
+        previousHeadY = game.getPreviousHeadY();
+        stepsLastUpdate = game.getStepsLastUpdate();
+        gameOver = game.isGameOver();
+
+        if (copiedFrom == game && version == game.getVersion()) { return; }
+        copiedFrom = game;
+        version = game.getVersion();
+        wallCount = game.getWallCount();
+        if (wallX.length < wallCount) {
+            int capacity = Math.max(wallCount, wallX.length * 2);
+            wallX = new float[capacity];
+            wallY = new float[capacity];
+        }
+        game.copyWalls(wallX, wallY);
+        foodX = game.getFoodLocation().x;
+        foodY = game.getFoodLocation().y;
+        score = game.getScore();
+    }
+
+    /**
+     * @return the number of snake body pieces, 0 if nothing has been published yet
+     */
+    public int getBodySize() { return bodySize; }
+
+    /**
+     * @param i the index of the snake body piece, 0 is the head
+     * @return the x coordinate of the snake body piece, in px
+     */
+    public float getBodyX(int i) { return bodyX[bodySize - 1 - i]; }
+
+    /**
+     * @param i the index of the snake body piece, 0 is the head
+     * @return the y coordinate of the snake body piece, in px
+     */
+    public float getBodyY(int i) { return bodyY[bodySize - 1 - i]; }
+
+    /**
+     * @return the x coordinate of the snake's head before the last update, in px
+     */
+    public float getPreviousHeadX() { return previousHeadX; }
+
+    /**
+     * @return the y coordinate of the snake's head before the last update, in px
+     */
+    public float getPreviousHeadY() { return previousHeadY; }
+
+    /**
+     * Gets where to draw the snake's head between the last two updates.
+     * @param alpha how far between the last update and the next one the frame is, from 0 to 1
+     * @return the x coordinate of the head interpolated from before the last update to after it, in px
+     */
+    public float getHeadX(float alpha) { return previousHeadX + (getBodyX(0) - previousHeadX) * alpha; }
+
+    /**
+     * Gets where to draw the snake's head between the last two updates.
+     * @param alpha how far between the last update and the next one the frame is, from 0 to 1
+     * @return the y coordinate of the head interpolated from before the last update to after it, in px
+     */
+    public float getHeadY(float alpha) { return previousHeadY + (getBodyY(0) - previousHeadY) * alpha; }
+
+    /**
+     * @return the number of walls
+     */
+    public int getWallCount() { return wallCount; }
+
+    /**
+     * @param i the index of the wall, from 0 to getWallCount() - 1
+     * @return the x coordinate of the wall, in px
+     */
+    public float getWallX(int i) { return wallX[i]; }
+
+    /**
+     * @param i the index of the wall, from 0 to getWallCount() - 1
+     * @return the y coordinate of the wall, in px
+     */
+    public float getWallY(int i) { return wallY[i]; }
+
+    /**
+     * @return the x coordinate of the food, in px
+     */
+    public float getFoodX() { return foodX; }
+
+    /**
+     * @return the y coordinate of the food, in px
+     */
+    public float getFoodY() { return foodY; }
+
+    /**
+     * @return the score (number of foods eaten)
+     */
+    public int getScore() { return score; }
+
+    /**
+     * @return the game's version when copied, see SnakeGame.getVersion()
+     */
+    public int getVersion() { return version; }
+
+    /**
+     * @return the number of steps the snake took in the last update, see SnakeGame.getStepsLastUpdate()
+     */
+    public int getStepsLastUpdate() { return stepsLastUpdate; }
+
+    /**
+     * @return true if the game was over (or nothing has been published yet)
+     */
+    public boolean isGameOver() { return gameOver; }
+}
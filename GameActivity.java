@@ -1,22 +1,28 @@
 package edu.moravian.csci299.gravitysnake;
 
 import android.app.Service;
-import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
-import android.media.MediaPlayer;
 import android.os.Bundle;
 import android.os.Handler;
+import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
 import android.view.WindowManager;
 import android.view.MotionEvent;
 
 import androidx.appcompat.app.AppCompatActivity;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * Activity that runs the actual game. Besides making sure the app is displayed
  * full-screen, this Activity sets the difficulty for the game and gets the
@@ -28,12 +34,32 @@ import androidx.appcompat.app.AppCompatActivity;
  * setting the difficulty and the sensors.
  */
 public class GameActivity extends AppCompatActivity implements SensorEventListener {
+    /** Name of the file in the app's files directory that the last game's recording is saved to */
+    public final static String RECORDING_FILE_NAME = "last_game.gsr";
+
+    /** Name of the file in the app's files directory that the running game is saved to when paused */
+    public final static String SNAPSHOT_FILE_NAME = "game_snapshot.gss";
+
+    /** The largest snapshot file that is read back, far more than a snapshot of the longest snake takes */
+    private final static long MAX_SNAPSHOT_BYTES = 16 << 20;
+
+    /** Name of the file in the app's files directory that the frame timing summary is saved to when profiling */
+    public final static String PROFILE_FILE_NAME = "frame_profile.txt";
+
+    /** Writes the snapshot and recording files in order, off of the UI thread */
+    private final static ExecutorService fileWriter = Executors.newSingleThreadExecutor();
+
+    /**
+     * The last snapshot saved by this process, or null if the game was over. When the activity is recreated this is
+     * restored instead of reading the file back, which may still be being written.
+     */
+    private static volatile byte[] lastSnapshot;
 
     private SensorManager sensorManager; // the system manager for sensors
     private Sensor gravitySensor; // the gravity sensor
-    private SnakeGameView snakeGameView;
-    private MediaPlayer mediaPlayer;
-    private boolean soundOn;
+    private SnakeGameView snakeGameView; // null when the game runs in snakeSurfaceView instead
+    private SnakeSurfaceView snakeSurfaceView; // only made when asked for with the "SurfaceRenderer" extra
+    private AudioEngine audio; // the app-wide music and sound effects
 
 
     @Override
@@ -42,8 +68,6 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         setContentView(R.layout.activity_game);
         hideSystemUI(); // forces it to be fullscreen
 
-        SharedPreferences preferences = this.getSharedPreferences("edu.moravian.csci299.gravitysnake", Context.MODE_PRIVATE);
-
         sensorManager = (SensorManager) getSystemService(Service.SENSOR_SERVICE);
         gravitySensor = sensorManager.getDefaultSensor(Sensor.TYPE_GRAVITY);
         snakeGameView = findViewById(R.id.snakeGameView);
@@ -52,17 +76,50 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
         Intent intent = getIntent();
         String highScoreKey = intent.getStringExtra("difficultyPreferenceKey");
         int difficultyInt = intent.getIntExtra("IndexOfDifficultySelected", 0);
-        soundOn = intent.getBooleanExtra("SoundOnOrOffSelected", false);
+        audio = AudioEngine.getInstance(this);
+        audio.setSoundOn(intent.getBooleanExtra("SoundOnOrOffSelected", false));
+
+        // Frame timing is only recorded (and shown) when asked for, e.g. with: adb shell am start --ez ProfileFrames true
+        boolean profileFrames = intent.getBooleanExtra("ProfileFrames", false);
+        FrameProfiler.setEnabled(profileFrames);
+
+        // The game runs on its own thread when asked for, e.g. with: adb shell am start --ez SurfaceRenderer true
+        if (intent.getBooleanExtra("SurfaceRenderer", false)) {
+            useSurfaceView(highScoreKey, difficultyInt, profileFrames);
+            return;
+        }
+        snakeGameView.setDebugOverlay(profileFrames);
 
         snakeGameView.setHighScoreKey(highScoreKey);
-        snakeGameView.setPreferences(preferences);
+        snakeGameView.setHighScores(HighScores.getInstance(this));
         snakeGameView.setDifficulty(difficultyInt);
+        snakeGameView.getQualityGovernor().setTargetFrameRate(getWindowManager().getDefaultDisplay().getRefreshRate());
+        snakeGameView.getSnakeGame().setListener(audio);
+        if (savedInstanceState != null) { restoreSnapshot(); } // being recreated, so continue the game from onPause()
+    }
 
-        if (soundOn) {
-            mediaPlayer = MediaPlayer.create(getApplicationContext(), R.raw.booamf);
-            mediaPlayer.setLooping(true);
-            mediaPlayer.start();
-        }
+    /**
+     * Replaces the SnakeGameView from the layout with a SnakeSurfaceView that runs the game on its own thread and sets
+     * it up the same way. The game is not given the audio as its listener, and is neither saved in a snapshot nor
+     * recorded, since it belongs to the game thread.
+     * @param highScoreKey the key of the high score for the difficulty
+     * @param difficulty the difficulty of the game
+     * @param profileFrames true to show the frame timing of each phase over the game
+     */
+    private void useSurfaceView(String highScoreKey, int difficulty, boolean profileFrames) {
+        snakeSurfaceView = new SnakeSurfaceView(this);
+        snakeSurfaceView.setId(snakeGameView.getId());
+        ViewGroup parent = (ViewGroup) snakeGameView.getParent();
+        int index = parent.indexOfChild(snakeGameView);
+        parent.removeViewAt(index);
+        parent.addView(snakeSurfaceView, index, snakeGameView.getLayoutParams());
+        snakeGameView = null;
+
+        snakeSurfaceView.setDebugOverlay(profileFrames);
+        snakeSurfaceView.setHighScoreKey(highScoreKey);
+        snakeSurfaceView.setHighScores(HighScores.getInstance(this));
+        snakeSurfaceView.setDifficulty(difficulty);
+        snakeSurfaceView.setTargetFrameRate(getWindowManager().getDefaultDisplay().getRefreshRate());
     }
 
     /**
@@ -72,7 +129,8 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
      */
     @Override
     public void onSensorChanged(SensorEvent event) {
-        snakeGameView.onSensorChanged(event);
+        if (snakeSurfaceView != null) { snakeSurfaceView.onSensorChanged(event); }
+        else { snakeGameView.onSensorChanged(event); }
     }
 
     /**
@@ -86,44 +144,161 @@ public class GameActivity extends AppCompatActivity implements SensorEventListen
     }
 
     /**
-     * Register listeners when the activity is resumed
+     * Register listeners when the activity is resumed. The gravity sensor is registered at the sampling rate of the
+     * game's gravity input and allowed to batch samples so the app is woken up less often.
      */
     @Override
     protected void onResume() {
         super.onResume();
-        sensorManager.registerListener(this, gravitySensor, SensorManager.SENSOR_DELAY_NORMAL);
+        GravityInput input;
+        if (snakeSurfaceView != null) {
+            snakeSurfaceView.resume();
+            input = snakeSurfaceView.getGravityInput();
+        } else {
+            snakeGameView.resume();
+            input = snakeGameView.getGravityInput();
+        }
+        sensorManager.registerListener(this, gravitySensor, input.getSamplingPeriodUs(), input.getMaxReportLatencyUs());
     }
 
     /**
-     * when activity is stopped we must release mediaPlayer for efficiency sake.
+     * When the activity is stopped it no longer needs the music. The music only pauses if no other activity of the app
+     * is showing.
      */
     @Override
     protected void onStop() {
         super.onStop();
-        mediaPlayer.release();
+        audio.stopMusic();
     }
 
     /**
-     * Unregister listener for gravity sensor when the activity is stopped
+     * Stop drawing frames and unregister listener for gravity sensor when the activity is paused, write out any new high score, save a
+     * snapshot of the game so it can continue if the activity is recreated, and save the recording of the game so far
+     * so it can be replayed later with GameReplayer. A game in a SnakeSurfaceView is neither saved nor recorded.
      */
     @Override
     protected void onPause() {
         super.onPause();
-        mediaPlayer.pause();
         sensorManager.unregisterListener(this);
+        HighScores.getInstance(this).flush();
+        if (snakeSurfaceView != null) {
+            snakeSurfaceView.pause();
+        } else {
+            snakeGameView.pause();
+            saveSnapshot();
+            saveRecording();
+        }
+        if (FrameProfiler.isEnabled()) { saveProfile(); }
+    }
+
+    /**
+     * Saves the frame timing summary of each phase to PROFILE_FILE_NAME in the app's files directory, and logs the
+     * frames per second drawn in each state of the frame scheduler and the decisions of the quality governor (those
+     * belong to the game thread with a SnakeSurfaceView, so they are only logged for a SnakeGameView).
+     */
+    private void saveProfile() {
+        if (snakeGameView != null) {
+            Log.i("GameActivity", "frames per state\n" + snakeGameView.getFrameScheduler().summary(System.nanoTime()));
+            Log.i("GameActivity", snakeGameView.getQualityGovernor().summary());
+        }
+        try {
+            FrameProfiler.dump(new File(getFilesDir(), PROFILE_FILE_NAME));
+        } catch (IOException e) {
+            Log.w("GameActivity", "could not save the frame timing summary", e);
+        }
+    }
+
+    /**
+     * Saves a snapshot of the running game to SNAPSHOT_FILE_NAME in the app's files directory. The snapshot is taken
+     * here but the file is written in the background. If the game is over there is nothing to continue so any old
+     * snapshot is deleted instead.
+     */
+    private void saveSnapshot() {
+        SnakeGame game = snakeGameView.getSnakeGame();
+        if (game.hasNotStarted() || game.isGameOver()) {
+            lastSnapshot = null;
+            File file = new File(getFilesDir(), SNAPSHOT_FILE_NAME);
+            fileWriter.execute(() -> {
+                if (file.exists() && !file.delete()) { Log.w("GameActivity", "could not delete the old game snapshot"); }
+            });
+            return;
+        }
+        byte[] snapshot = GameSnapshot.save(game);
+        lastSnapshot = snapshot;
+        writeInBackground(SNAPSHOT_FILE_NAME, snapshot, "game snapshot");
     }
 
     /**
-     * when activity is started we must release check to see if mediaPlayer has been released and if sound should be on
-     * if the answer is yes to both we must set up our media player and start the game audio.
+     * Restores the game from the snapshot saved by saveSnapshot(), if there is one. If it can't be read a new game is
+     * started as usual.
+     */
+    private void restoreSnapshot() {
+        byte[] saved = lastSnapshot;
+        if (saved != null) { // saved by this process, so the file is not needed
+            try {
+                GameSnapshot.restore(saved, snakeGameView.getSnakeGame());
+            } catch (IOException e) {
+                Log.w("GameActivity", "could not restore the game snapshot", e);
+            }
+            return;
+        }
+        File file = new File(getFilesDir(), SNAPSHOT_FILE_NAME);
+        if (!file.exists()) { return; }
+        if (file.length() > MAX_SNAPSHOT_BYTES) {
+            Log.w("GameActivity", "game snapshot is too large to be valid");
+            return;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] snapshot = new byte[(int) file.length()];
+            int read = 0;
+            while (read < snapshot.length) {
+                int n = in.read(snapshot, read, snapshot.length - read);
+                if (n < 0) { throw new IOException("snapshot file is too short"); }
+                read += n;
+            }
+            GameSnapshot.restore(snapshot, snakeGameView.getSnakeGame());
+        } catch (IOException e) {
+            Log.w("GameActivity", "could not restore the game snapshot", e);
+        }
+    }
+
+    /**
+     * Saves the recording of the game so far to RECORDING_FILE_NAME in the app's files directory, replacing the
+     * recording of any earlier game. The recording is copied here but the file is written in the background.
+     */
+    private void saveRecording() {
+        if (!snakeGameView.getRecorder().isRecording()) { return; } // a restored game is not recorded
+        writeInBackground(RECORDING_FILE_NAME, snakeGameView.getRecorder().toByteArray(), "recording of the game");
+    }
+
+    /**
+     * Writes a file in the app's files directory on the file writer thread. The bytes go to a temporary file that is
+     * then renamed over the file, so the file is never left half written if the app is killed.
+     * @param name the name of the file
+     * @param bytes the new contents of the file, which must not be changed afterwards
+     * @param what what the file holds, for the log if it cannot be written
+     */
+    private void writeInBackground(String name, byte[] bytes, String what) {
+        File file = new File(getFilesDir(), name), temp = new File(getFilesDir(), name + ".tmp");
+        fileWriter.execute(() -> {
+            try (FileOutputStream out = new FileOutputStream(temp)) {
+                out.write(bytes);
+            } catch (IOException e) {
+                Log.w("GameActivity", "could not save the " + what, e);
+                return;
+            }
+            if (!temp.renameTo(file)) { Log.w("GameActivity", "could not replace the " + what); }
+        });
+    }
+
+    /**
+     * When the activity is started the music plays (if sound is on). The music was already started by the StartActivity
+     * so it just keeps going.
      */
     @Override
     protected void onStart() {
         super.onStart();
-        if (soundOn && mediaPlayer == null) {
-            mediaPlayer = MediaPlayer.create(getApplicationContext(), R.raw.booamf);
-            mediaPlayer.start();
-        }
+        audio.startMusic();
     }
 
     ///// Don't worry about the rest of this code - it deals with making a fullscreen app /////
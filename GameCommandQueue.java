@@ -0,0 +1,97 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lock-free queue of input commands (touches) sent from the UI thread to
+ * the thread running the game. Commands are stored in preallocated primitive
+ * arrays so sending one never allocates. Gravity samples do not go through
+ * here: only the latest one matters, so they are handed over by GravityInput.
+ *
+ * This is a single-producer single-consumer queue: only one thread may call
+ * offer() (the UI thread, which receives the touch events) and only one
+ * thread may call drain() (the game thread).
+ */
+public class GameCommandQueue {
+    /** Command for a touch that is not a press */
+    public final static int TOUCH = 0;
+
+    /** Command for a touch that just pressed down */
+    public final static int TOUCH_DOWN = 1;
+
+    /**
+     * Receives the commands when the queue is drained.
+     */
+    public interface Consumer {
+        /**
+         * Called for each command in the order they were offered.
+         * @param type the type of the command, either TOUCH or TOUCH_DOWN
+         * @param x the x of the touch, in px
+         * @param y the y of the touch, in px
+         */
+        void onCommand(int type, float x, float y);
+    }
+
+    /** The type and the point of each command */
+    private final int[] types;
+    private final float[] xs, ys;
+
+    /** The mask for converting a position into an index in the arrays */
+    private final int mask;
+
+    /** The position of the next command to read, only written by the consumer */
+    private final AtomicInteger head = new AtomicInteger();
+
+    /** The position of the next command to write, only written by the producer */
+    private final AtomicInteger tail = new AtomicInteger();
+
+    /**
+     * Create an empty queue.
+     * @param capacity the maximum number of commands waiting, must be a power of 2
+     */
+    public GameCommandQueue(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("capacity must be a power of 2");
+        }
+        types = new int[capacity];
+        xs = new float[capacity];
+        ys = new float[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Add a command to the queue. Only the producer thread may call this.
+     * @param type the type of the command
+     * @param x the x of the touch, in px
+     * @param y the y of the touch, in px
+     * @return true if the command was added, false if the queue is full and
+     *         the command was dropped
+     */
+    public boolean offer(int type, float x, float y) {
+        int t = tail.get();
+        if (t - head.get() == types.length) { return false; }
+        int index = t & mask;
+        types[index] = type;
+        xs[index] = x;
+        ys[index] = y;
+        tail.lazySet(t + 1); // publishes the command to the consumer
+        return true;
+    }
+
+    /**
+     * Pass all of the commands currently in the queue to the consumer and
+     * remove them. Only the consumer thread may call this.
+     * @param consumer the consumer to receive the commands
+     * @return the number of commands drained
+     */
+    public int drain(Consumer consumer) {
+        int h = head.get(), t = tail.get();
+        int count = t - h;
+        for (; h != t; h++) {
+            int index = h & mask;
+            consumer.onCommand(types[index], xs[index], ys[index]);
+        }
+        head.lazySet(h); // frees up the space for the producer
+        return count;
+    }
+}
@@ -0,0 +1,313 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Records a SnakeGame so that it can be replayed exactly with GameReplayer.
+ * All input to the game (starting it, direction changes, touches, and
+ * updates) goes through the recorder, which passes it on to the game and
+ * writes it to a compact binary stream.
+ *
+ * The stream starts with a header holding the seed and all of the settings
+ * of the game. After that each record starts with the number of updates
+ * since the previous record (as a varint) followed by the type of record:
+ * <ul>
+ *     <li>DIRECTION: the change in the quantized direction (zigzag varint)</li>
+ *     <li>TOUCH: the change in the quantized x and y from the last touch (zigzag varints)</li>
+ *     <li>TOUCHES: the number of points in a batch of touches (varint) followed
+ *     by each point as for TOUCH</li>
+ *     <li>CHECKPOINT: the state hash of the game after the update (4 bytes)</li>
+ *     <li>END: the state hash of the game when recording stopped (4 bytes)</li>
+ * </ul>
+ * Directions and touches are quantized before they are given to the game so
+ * that the recorded values are exactly the ones the game saw. Each change in
+ * direction costs about 3 bytes and updates with no input cost nothing.
+ *
+ * A recording only replays exactly with the same simulation that made it, so
+ * the version in MAGIC must be bumped whenever a change to the game makes the
+ * same input play out differently (for example how the snake moves).
+ */
+public class GameRecorder {
+    /** The first 4 bytes of every recording ("GSR2") */
+    public final static int MAGIC = 0x47535232;
+
+    /** The first 4 bytes of recordings made by older versions of the game ("GSR1"), which can no longer be replayed */
+    public final static int MAGIC_V1 = 0x47535231;
+
+    /** Record types */
+    public final static int END = 0, DIRECTION = 1, TOUCH = 2, CHECKPOINT = 3, TOUCHES = 4;
+
+    /** Number of steps in a full circle for quantized directions */
+    public final static int DIRECTION_STEPS = 1 << 16;
+
+    /** Number of steps per px for quantized touches */
+    public final static float TOUCH_STEPS_PER_PX = 16f;
+
+    /** Number of updates between checkpoints */
+    public final static int CHECKPOINT_INTERVAL = 64;
+
+    /** The game being recorded */
+    private final SnakeGame game;
+
+    /** The recording so far, only the first size bytes are used */
+    private byte[] buffer = new byte[4096];
+    private int size = 0;
+
+    /** The number of updates so far and the number at the last record */
+    private int tick = 0, lastRecordTick = 0;
+
+    /** The last quantized direction and touch that were recorded */
+    private int lastDirection = 0, lastTouchX = 0, lastTouchY = 0;
+
+    /** If the recording has been started */
+    private boolean started = false;
+
+    /**
+     * Create a recorder for a game. Nothing is recorded until startGame().
+     * @param game the game to record
+     */
+    public GameRecorder(SnakeGame game) { this.game = game; }
+
+    /**
+     * @return the game being recorded
+     */
+    public SnakeGame getGame() { return game; }
+
+    /**
+     * Starts the game and a new recording. All settings of the game (dp to px
+     * factor, speeds, lengths, wall probability) must be set before this.
+     * @param width the width of the playing area in px
+     * @param height the height of the playing area in px
+     */
+    public void startGame(int width, int height) {
+        game.startGame(width, height);
+        startRecording(width, height);
+    }
+
+    /**
+     * Starts the game with a particular seed and a new recording. All
+     * settings of the game must be set before this.
+     * @param width the width of the playing area in px
+     * @param height the height of the playing area in px
+     * @param seed the seed for the random number generator of the game
+     */
+    public void startGame(int width, int height, long seed) {
+        game.startGame(width, height, seed);
+        startRecording(width, height);
+    }
+
+    /**
+     * Starts a new recording of the game that was just started, beginning with the header.
+     * @param width the width of the playing area in px
+     * @param height the height of the playing area in px
+     */
+    private void startRecording(int width, int height) {
+        size = 0;
+        tick = lastRecordTick = 0;
+        lastDirection = quantizeDirection(game.getMovementDirection());
+        lastTouchX = lastTouchY = 0;
+        writeInt(MAGIC);
+        writeLong(game.getSeed());
+        writeVarInt(width);
+        writeVarInt(height);
+        writeInt(Float.floatToIntBits(game.getDpToPxFactor()));
+        writeLong(Double.doubleToLongBits(game.getInitialSpeed()));
+        writeLong(Double.doubleToLongBits(game.getSpeedIncreasePerFood()));
+        writeVarInt(game.getStartingLength());
+        writeVarInt(game.getLengthIncreasePerFood());
+        writeLong(Double.doubleToLongBits(game.getWallPlacementProbability()));
+        writeVarInt(lastDirection);
+        game.setMovementDirection(directionOf(lastDirection));
+        started = true;
+    }
+
+    /**
+     * Sets the direction that the snake will move in the future. The angle is
+     * quantized to one of DIRECTION_STEPS directions.
+     * @param angle the new direction of the snake, in radians
+     */
+    public void setMovementDirection(double angle) {
+        int quantized = quantizeDirection(angle);
+        if (started && quantized != lastDirection) {
+            writeRecordStart(DIRECTION);
+            // Wrap the change around the circle so that it is always small
+            int change = (quantized - lastDirection) << 16 >> 16;
+            writeVarInt(zigzag(change));
+            lastDirection = quantized;
+        }
+        game.setMovementDirection(directionOf(quantized));
+    }
+
+    /**
+     * "Touch" the game at a particular point. The point is quantized to
+     * 1/TOUCH_STEPS_PER_PX of a px.
+     * @param x the x coordinate of the touched point, in px
+     * @param y the y coordinate of the touched point, in px
+     * @return true if the game is still going, false if the game is now over
+     */
+    public boolean touched(float x, float y) {
+        int qx = Math.round(x * TOUCH_STEPS_PER_PX), qy = Math.round(y * TOUCH_STEPS_PER_PX);
+        if (started) {
+            writeRecordStart(TOUCH);
+            writeVarInt(zigzag(qx - lastTouchX));
+            writeVarInt(zigzag(qy - lastTouchY));
+            lastTouchX = qx;
+            lastTouchY = qy;
+        }
+        return game.touched(qx / TOUCH_STEPS_PER_PX, qy / TOUCH_STEPS_PER_PX);
+    }
+
+    /**
+     * "Touch" the game at every point of a batch at once. Each point is
+     * quantized (in the batch) to 1/TOUCH_STEPS_PER_PX of a px.
+     * @param touches the touched points
+     * @return true if the game is still going, false if the game is over or any point touched the snake
+     */
+    public boolean touched(TouchBatch touches) {
+        int n = touches.size();
+        if (started) {
+            writeRecordStart(TOUCHES);
+            writeVarInt(n);
+        }
+        for (int i = 0; i < n; i++) {
+            int qx = Math.round(touches.getX(i) * TOUCH_STEPS_PER_PX), qy = Math.round(touches.getY(i) * TOUCH_STEPS_PER_PX);
+            if (started) {
+                writeVarInt(zigzag(qx - lastTouchX));
+                writeVarInt(zigzag(qy - lastTouchY));
+                lastTouchX = qx;
+                lastTouchY = qy;
+            }
+            touches.set(i, qx / TOUCH_STEPS_PER_PX, qy / TOUCH_STEPS_PER_PX);
+        }
+        return game.touched(touches);
+    }
+
+    /**
+     * Update the game by a single tick, writing a checkpoint every so often.
+     * @return true if the game is still going, false if the game is over
+     */
+    public boolean update() {
+        boolean running = game.update();
+        if (started) {
+            tick++;
+            if (tick % CHECKPOINT_INTERVAL == 0) {
+                writeRecordStart(CHECKPOINT);
+                writeInt(game.stateHash());
+            }
+        }
+        return running;
+    }
+
+    /**
+     * @return true if a recording has been started with startGame()
+     */
+    public boolean isRecording() { return started; }
+
+    /**
+     * @return the number of updates recorded so far
+     */
+    public int getTicks() { return tick; }
+
+    /**
+     * Gets the complete recording so far, ending with the current state of
+     * the game. Recording can continue afterwards.
+     * @return the recording
+     */
+    public byte[] toByteArray() {
+        int sizeBeforeEnd = size, tickBeforeEnd = lastRecordTick;
+        writeRecordStart(END);
+        writeInt(game.stateHash());
+        byte[] recording = Arrays.copyOf(buffer, size);
+        // Take the end back off so more can be recorded
+        size = sizeBeforeEnd;
+        lastRecordTick = tickBeforeEnd;
+        return recording;
+    }
+
+    /**
+     * Writes the complete recording so far to a stream.
+     * @param stream the stream to write to
+     * @throws IOException if the stream cannot be written to
+     */
+    public void writeTo(OutputStream stream) throws IOException { stream.write(toByteArray()); }
+
+    /**
+     * Writes the start of a record: the number of updates since the last
+     * record and the type of this record.
+     * @param type the type of the record
+     */
+    private void writeRecordStart(int type) {
+        writeVarInt(tick - lastRecordTick);
+        write(type);
+        lastRecordTick = tick;
+    }
+
+    /**
+     * @param angle a direction in radians
+     * @return the direction quantized to a number from 0 to DIRECTION_STEPS-1
+     */
+    static int quantizeDirection(double angle) {
+        long steps = Math.round(angle / (2 * Math.PI) * DIRECTION_STEPS);
+        return (int) (steps & (DIRECTION_STEPS - 1));
+    }
+
+    /**
+     * @param quantized a quantized direction
+     * @return the direction in radians, from -pi to pi
+     */
+    static double directionOf(int quantized) {
+        int signed = quantized << 16 >> 16; // from -DIRECTION_STEPS/2 to DIRECTION_STEPS/2-1
+        return signed * (2 * Math.PI / DIRECTION_STEPS);
+    }
+
+    /**
+     * @param value any int
+     * @return the value with the sign moved to the lowest bit so small
+     *         negative values are small positive values
+     */
+    static int zigzag(int value) { return (value << 1) ^ (value >> 31); }
+
+    /**
+     * Writes a single byte, growing the buffer if needed.
+     * @param value the byte to write (only the low 8 bits are used)
+     */
+    private void write(int value) {
+        if (size == buffer.length) { buffer = Arrays.copyOf(buffer, size * 2); }
+        buffer[size++] = (byte) value;
+    }
+
+    /**
+     * Writes an unsigned int using 7 bits per byte, the high bit set on all
+     * but the last byte.
+     * @param value the value to write
+     */
+    private void writeVarInt(int value) {
+        while ((value & ~0x7F) != 0) {
+            write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        write(value);
+    }
+
+    /**
+     * Writes a big-endian int.
+     * @param value the value to write
+     */
+    private void writeInt(int value) {
+        write(value >>> 24);
+        write(value >>> 16);
+        write(value >>> 8);
+        write(value);
+    }
+
+    /**
+     * Writes a big-endian long.
+     * @param value the value to write
+     */
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+}
@@ -0,0 +1,283 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.Typeface;
+import android.util.DisplayMetrics;
+
+import java.util.Locale;
+
+/**
+ * Draws a SnakeGame onto a Canvas. This holds all of the paints used for
+ * drawing but none of the game logic, so it can be shared by any view that
+ * displays the game no matter which thread it draws on. It only reads the
+ * FrameSnapshots published by the game, never the live game.
+ */
+public class GameRenderer {
+    /** The color of the background behind the game */
+    public final static int BACKGROUND_COLOR = 0xFF333333;
+
+    /** The paints used for the different parts of the game */
+    private final Paint scorePaint = new Paint();
+    private final Paint foodPaint = new Paint();
+    private final Paint snakePaint = new Paint();
+    private final Paint headPaint = new Paint();
+    private final Paint wallPaint = new Paint();
+
+    /** The metrics about the display to convert from dp and sp to px */
+    private final DisplayMetrics displayMetrics;
+
+    /** The radius of the body pieces, food, and walls, in px */
+    private final float bodyRadius, foodRadius, wallRadius;
+
+    /**
+     * The path through all of the drawn body points. It is stroked with a
+     * round-capped, round-joined line as wide as a body piece, which covers
+     * the same area as a circle at each point but is a single draw call.
+     */
+    private final Path bodyPath = new Path();
+
+    /** The head of the snake, drawn once ahead of time */
+    private final Bitmap headSprite;
+
+    /**
+     * The most body points drawn. The tolerance (set by the quality level, which follows the real frame times) is what
+     * decides how many points are drawn; this only caps a very long and very curvy snake.
+     */
+    private final static int MAX_BODY_POINTS = 4096;
+
+    /** Picks the body points worth drawing */
+    private final BodyDecimator decimator = new BodyDecimator();
+
+    /**
+     * The layer with everything that does not move every frame (the walls,
+     * the food, and the score), the canvas for drawing on it, and the version
+     * of the game it was drawn from (and the exchange of the frame). It is
+     * only redrawn when the game's version changes and otherwise just copied
+     * under the snake each frame.
+     */
+    private Bitmap staticLayer;
+    private Canvas staticCanvas;
+    private int staticVersion;
+    private FrameExchange staticExchange;
+
+    /** The score text, only remade when the score changes */
+    private String scoreText = "0";
+    private int scoreTextValue = 0;
+
+    /** The paint for the debug overlay showing the frame timing of each phase */
+    private final Paint overlayPaint = new Paint();
+
+    /** If the debug overlay is shown */
+    private boolean debugOverlay = false;
+
+    /** If the quality level allows the debug overlay, and the name of the level shown on it */
+    private boolean overlayAllowed = true;
+    private String qualityName = QualityGovernor.getName(QualityGovernor.NORMAL);
+
+    /**
+     * Create the renderer and setup all of the paints.
+     * @param displayMetrics the metrics about the display to convert from dp and sp to px
+     */
+    public GameRenderer(DisplayMetrics displayMetrics) {
+        this.displayMetrics = displayMetrics;
+
+        scorePaint.setColor(Color.WHITE);
+        scorePaint.setAntiAlias(true);
+        scorePaint.setTextAlign(Paint.Align.CENTER);
+        scorePaint.setTextSize(spToPx(24)); // use sp for text
+        scorePaint.setFakeBoldText(true);
+
+        foodPaint.setColor(Color.RED);
+        snakePaint.setColor(Color.parseColor("#21C14C"));
+        headPaint.setColor(Color.GREEN);
+        wallPaint.setColor(Color.YELLOW);
+
+        bodyRadius = dpToPx(Snake.BODY_PIECE_SIZE_DP);
+        foodRadius = dpToPx(SnakeGame.FOOD_SIZE_DP);
+        wallRadius = dpToPx(SnakeGame.WALL_SIZE_DP);
+
+        snakePaint.setStyle(Paint.Style.STROKE);
+        snakePaint.setStrokeWidth(2 * bodyRadius);
+        snakePaint.setStrokeCap(Paint.Cap.ROUND);
+        snakePaint.setStrokeJoin(Paint.Join.ROUND);
+        decimator.setMaxPoints(MAX_BODY_POINTS);
+
+        int headSize = (int) Math.ceil(2 * bodyRadius);
+        headSprite = Bitmap.createBitmap(headSize, headSize, Bitmap.Config.ARGB_8888);
+        new Canvas(headSprite).drawCircle(headSize / 2f, headSize / 2f, bodyRadius, headPaint);
+
+        overlayPaint.setColor(Color.WHITE);
+        overlayPaint.setAntiAlias(true);
+        overlayPaint.setTypeface(Typeface.MONOSPACE);
+        overlayPaint.setTextSize(spToPx(10));
+    }
+
+    /**
+     * @param debugOverlay true to show the frame timing of each phase from the FrameProfiler over the game
+     */
+    public void setDebugOverlay(boolean debugOverlay) { this.debugOverlay = debugOverlay; }
+
+    /**
+     * Applies the settings of the governor's current quality level: anti-aliasing of the snake, food, and walls, the
+     * tolerance for skipping body points, and if the debug overlay may be drawn. The cached layer is redrawn if
+     * anti-aliasing changed.
+     * @param governor the governor with the quality level to use
+     */
+    public void applyQuality(QualityGovernor governor) {
+        boolean antiAlias = governor.isAntiAlias();
+        if (snakePaint.isAntiAlias() != antiAlias) {
+            snakePaint.setAntiAlias(antiAlias);
+            foodPaint.setAntiAlias(antiAlias);
+            wallPaint.setAntiAlias(antiAlias);
+            staticExchange = null; // redraw the food and walls
+        }
+        decimator.setTolerance(governor.getBodyTolerance());
+        overlayAllowed = governor.isOverlayAllowed();
+        qualityName = QualityGovernor.getName(governor.getLevel());
+    }
+
+    /**
+     * @param tolerance the distance a body point may be from the drawn body
+     *                  when it is skipped, in px, 0 to draw every point that
+     *                  is not exactly on a straight line
+     */
+    public void setBodyTolerance(float tolerance) { decimator.setTolerance(tolerance); }
+
+    /**
+     * @param dp the size in dp (device-independent-pixels)
+     * @return the size in px (pixels)
+     */
+    public float dpToPx(float dp) { return dp * displayMetrics.density; }
+
+    /**
+     * @param sp the size in sp (scalable-pixels)
+     * @return the size in px (pixels)
+     */
+    public float spToPx(float sp) { return sp * displayMetrics.scaledDensity; }
+
+    /**
+     * Draws the food, score, snake, and walls of the game. The background is
+     * not drawn, see drawBackground(). The walls, food, and score come from a
+     * cached layer that is only redrawn when they change, and the snake is
+     * drawn on top of it. Nothing is drawn if no frame has been published yet.
+     * @param canvas the canvas to draw on
+     * @param frame the latest frame of the game, from FrameExchange.latest()
+     * @param alpha how far between the last tick and the next tick the current frame is, from 0 to 1
+     */
+    public void draw(Canvas canvas, FrameSnapshot frame, float alpha) {
+        if (frame.getBodySize() == 0) { return; }
+        long start = FrameProfiler.start();
+        updateStaticLayer(canvas.getWidth(), canvas.getHeight(), frame);
+        canvas.drawBitmap(staticLayer, 0, 0, null);
+        FrameProfiler.end(FrameProfiler.DRAW_WALLS, start);
+
+        start = FrameProfiler.start();
+        drawSnake(canvas, frame, alpha);
+        FrameProfiler.end(FrameProfiler.DRAW_SNAKE, start);
+
+        if (debugOverlay && overlayAllowed) { drawOverlay(canvas); }
+    }
+
+    /**
+     * Redraws the static layer if the game has changed since it was last
+     * drawn, making it first if it doesn't exist or is the wrong size.
+     * @param width the width of the canvas being drawn on
+     * @param height the height of the canvas being drawn on
+     * @param frame the frame to draw
+     */
+    private void updateStaticLayer(int width, int height, FrameSnapshot frame) {
+        if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height) {
+            if (staticLayer != null) { staticLayer.recycle(); }
+            staticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            staticCanvas = new Canvas(staticLayer);
+            staticExchange = null;
+        } else if (staticExchange == frame.exchange && staticVersion == frame.getVersion()) {
+            return;
+        }
+        staticExchange = frame.exchange;
+        staticVersion = frame.getVersion();
+        staticCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+
+        long start = FrameProfiler.start();
+        staticCanvas.drawCircle(frame.getFoodX(), frame.getFoodY(), foodRadius, foodPaint);
+        if (frame.getScore() != scoreTextValue) {
+            scoreTextValue = frame.getScore();
+            scoreText = String.valueOf(scoreTextValue);
+        }
+        staticCanvas.drawText(scoreText, width >> 1, 100, scorePaint);
+        FrameProfiler.end(FrameProfiler.DRAW_SCORE, start);
+
+        drawWalls(staticCanvas, frame);
+    }
+
+    /**
+     * Draws the p50, p95, p99, and max time (in us) of each phase and the
+     * quality level in the top left corner. This allocates, but only when the
+     * overlay is on.
+     * @param canvas the canvas to draw on
+     */
+    private void drawOverlay(Canvas canvas) {
+        float lineHeight = overlayPaint.getTextSize() * 1.2f;
+        float y = lineHeight;
+        canvas.drawText(String.format(Locale.US, "%-10s %7s %7s %7s %7s", "us", "p50", "p95", "p99", "max"), 0, y, overlayPaint);
+        for (int phase = 0; phase < FrameProfiler.PHASE_COUNT; phase++) {
+            y += lineHeight;
+            canvas.drawText(String.format(Locale.US, "%-10s %7.1f %7.1f %7.1f %7.1f", FrameProfiler.getName(phase),
+                    FrameProfiler.getPercentile(phase, 50) / 1e3, FrameProfiler.getPercentile(phase, 95) / 1e3,
+                    FrameProfiler.getPercentile(phase, 99) / 1e3, FrameProfiler.getMax(phase) / 1e3), 0, y, overlayPaint);
+        }
+        canvas.drawText("quality " + qualityName, 0, y + lineHeight, overlayPaint);
+    }
+
+    /**
+     * Fills the canvas with the background color. Views that draw their own
+     * background do not need this.
+     * @param canvas the canvas to draw on
+     */
+    public void drawBackground(Canvas canvas) { canvas.drawColor(BACKGROUND_COLOR); }
+
+    /**
+     * Draws all of the walls.
+     * @param canvas the canvas to draw on
+     * @param frame the frame to draw
+     */
+    private void drawWalls(Canvas canvas, FrameSnapshot frame) {
+        for (int i = 0, n = frame.getWallCount(); i < n; i++)
+            canvas.drawCircle(frame.getWallX(i), frame.getWallY(i), wallRadius, wallPaint);
+    }
+
+    /**
+     * Draws the snake as a single stroked path from the tail to the head followed by the head sprite. Only the body
+     * points picked by the BodyDecimator are used, so long straight stretches of the body are a single line. To interpolate
+     * between the last two ticks, the head is drawn at the point alpha of the way from where it was before the last tick
+     * to where it is now. The path ends at that same point, after the body point that was the head before the last tick
+     * (the steps in between are all on the straight line to the current head, so none of them are needed).
+     * @param canvas the canvas to draw on
+     * @param frame the frame to draw
+     * @param alpha how far between the last tick and the next tick the current frame is, from 0 to 1
+     */
+    private void drawSnake(Canvas canvas, FrameSnapshot frame, float alpha) {
+        if (frame.isGameOver()) { alpha = 1f; }
+        int size = frame.getBodySize();
+        float headX = frame.getHeadX(alpha), headY = frame.getHeadY(alpha);
+        int previousHead = Math.min(size - 1, frame.getStepsLastUpdate());
+        if (size > 1) {
+            int count = decimator.decimate(frame, size - 1, previousHead);
+            int[] indices = decimator.getIndices();
+            bodyPath.rewind();
+            bodyPath.moveTo(frame.getBodyX(indices[0]), frame.getBodyY(indices[0]));
+            for (int i = 1; i < count; i++) {
+                bodyPath.lineTo(frame.getBodyX(indices[i]), frame.getBodyY(indices[i]));
+            }
+            if (previousHead > 0) { bodyPath.lineTo(headX, headY); }
+            canvas.drawPath(bodyPath, snakePaint);
+        }
+        float halfHead = headSprite.getWidth() / 2f;
+        canvas.drawBitmap(headSprite, headX - halfHead, headY - halfHead, null);
+    }
+}
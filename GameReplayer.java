@@ -0,0 +1,142 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * Replays a recording made by GameRecorder. The game is rebuilt from the
+ * seed and settings in the recording and then re-driven with the recorded
+ * input as fast as possible, without any drawing. At every checkpoint and at
+ * the end the state of the replayed game is compared to the recorded state so
+ * any difference is caught at (nearly) the update where it happened.
+ *
+ * This makes it possible to reproduce a game exactly, for example to profile
+ * a slow session offline.
+ */
+public class GameReplayer {
+    /**
+     * The outcome of a replay.
+     */
+    public static class Result {
+        /** The game after the replay */
+        public final SnakeGame game;
+
+        /** The number of updates that were replayed */
+        public final int ticks;
+
+        /** The number of checkpoints (including the end) that were compared */
+        public final int checkpoints;
+
+        /** The update where the replay first differed from the recording, or -1 if it never did */
+        public final int firstMismatchTick;
+
+        Result(SnakeGame game, int ticks, int checkpoints, int firstMismatchTick) {
+            this.game = game;
+            this.ticks = ticks;
+            this.checkpoints = checkpoints;
+            this.firstMismatchTick = firstMismatchTick;
+        }
+
+        /**
+         * @return true if the replayed game matched the recording at every checkpoint
+         */
+        public boolean matched() { return firstMismatchTick < 0; }
+    }
+
+    /** The recording being replayed */
+    private final DataInputStream in;
+
+    private GameReplayer(byte[] recording) { in = new DataInputStream(new ByteArrayInputStream(recording)); }
+
+    /**
+     * Replays a recording.
+     * @param recording the recording, from GameRecorder.toByteArray()
+     * @return the outcome of the replay
+     * @throws IOException if the recording is not valid or was made by an older version of the game
+     */
+    public static Result replay(byte[] recording) throws IOException {
+        return new GameReplayer(recording).run();
+    }
+
+    /**
+     * Rebuilds the game from the header and then replays every record.
+     * @return the outcome of the replay
+     * @throws IOException if the recording is not valid
+     */
+    private Result run() throws IOException {
+        int magic = in.readInt();
+        if (magic == GameRecorder.MAGIC_V1) { throw new IOException("recording made by an older version of the game"); }
+        if (magic != GameRecorder.MAGIC) { throw new IOException("not a recording"); }
+        long seed = in.readLong();
+        int width = readVarInt(), height = readVarInt();
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(in.readFloat());
+        game.setInitialSpeed(in.readDouble());
+        game.setSpeedIncreasePerFood(in.readDouble());
+        game.setStartingLength(readVarInt());
+        game.setLengthIncreasePerFood(readVarInt());
+        game.setWallPlacementProbability(in.readDouble());
+        int direction = readVarInt();
+        game.startGame(width, height, seed);
+        game.setMovementDirection(GameRecorder.directionOf(direction));
+
+        int tick = 0, checkpoints = 0, firstMismatchTick = -1;
+        int touchX = 0, touchY = 0;
+        TouchBatch touches = new TouchBatch();
+        while (true) {
+            // Run the updates up to this record
+            int target = tick + readVarInt();
+            while (tick < target) { game.update(); tick++; }
+
+            int type = in.readUnsignedByte();
+            if (type == GameRecorder.DIRECTION) {
+                direction = (direction + unzigzag(readVarInt())) & (GameRecorder.DIRECTION_STEPS - 1);
+                game.setMovementDirection(GameRecorder.directionOf(direction));
+            } else if (type == GameRecorder.TOUCH) {
+                touchX += unzigzag(readVarInt());
+                touchY += unzigzag(readVarInt());
+                game.touched(touchX / GameRecorder.TOUCH_STEPS_PER_PX, touchY / GameRecorder.TOUCH_STEPS_PER_PX);
+            } else if (type == GameRecorder.TOUCHES) {
+                int n = readVarInt();
+                if (n > touches.getCapacity()) { touches = new TouchBatch(n); }
+                touches.clear();
+                for (int i = 0; i < n; i++) {
+                    touchX += unzigzag(readVarInt());
+                    touchY += unzigzag(readVarInt());
+                    touches.add(touchX / GameRecorder.TOUCH_STEPS_PER_PX, touchY / GameRecorder.TOUCH_STEPS_PER_PX);
+                }
+                game.touched(touches);
+            } else if (type == GameRecorder.CHECKPOINT || type == GameRecorder.END) {
+                checkpoints++;
+                if (in.readInt() != game.stateHash() && firstMismatchTick < 0) { firstMismatchTick = tick; }
+                if (type == GameRecorder.END) { return new Result(game, tick, checkpoints, firstMismatchTick); }
+            } else {
+                throw new IOException("unknown record type " + type);
+            }
+        }
+    }
+
+    /**
+     * Reads an unsigned int written with 7 bits per byte.
+     * @return the value read
+     * @throws IOException if the recording ends or the value is too long
+     */
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) { throw new EOFException(); }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) { return value; }
+        }
+        throw new IOException("varint too long");
+    }
+
+    /**
+     * @param value a zigzag encoded value
+     * @return the original signed value
+     */
+    private static int unzigzag(int value) { return (value >>> 1) ^ -(value & 1); }
+}
@@ -0,0 +1,190 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Saves the complete state of a SnakeGame (including its Snake and random
+ * number generator) into a compact byte array and restores it again, so a game
+ * can survive its Activity being destroyed. A restored game continues exactly
+ * as the original would have.
+ *
+ * Everything is stored in full precision. The long lists of coordinates (the
+ * body points and the walls) are stored as the change in the change of the
+ * bits of each float, as zigzag varints: neighboring body points are a step
+ * apart along a gently curving line so this is usually only a byte or two per
+ * coordinate, and it takes a few milliseconds even for a snake with 50,000
+ * body points.
+ */
+public final class GameSnapshot {
+    /** The first 4 bytes of every snapshot ("GSS1") */
+    public final static int MAGIC = 0x47535331;
+
+    private GameSnapshot() { }
+
+    /**
+     * Takes a snapshot of a game.
+     * @param game the game, which must have been started
+     * @return the snapshot
+     */
+    public static byte[] save(SnakeGame game) {
+        Writer out = new Writer();
+        out.writeInt(MAGIC);
+        game.writeSnapshot(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Restores a game from a snapshot, replacing everything about the game.
+     * The game is only changed once the whole snapshot has been read.
+     * @param snapshot the snapshot, from save()
+     * @param game the game to restore into
+     * @throws IOException if the snapshot is not valid, in which case the game is left as it was
+     */
+    public static void restore(byte[] snapshot, SnakeGame game) throws IOException {
+        Reader in = new Reader(snapshot);
+        if (in.readInt() != MAGIC) { throw new IOException("not a snapshot"); }
+        game.readSnapshot(in);
+    }
+
+    /**
+     * Writes the values of a snapshot into a growing byte array.
+     */
+    static final class Writer {
+        private byte[] buffer = new byte[1024];
+        private int size = 0;
+
+        byte[] toByteArray() { return Arrays.copyOf(buffer, size); }
+
+        /**
+         * Writes a single byte, growing the buffer if needed.
+         * @param value the byte to write (only the low 8 bits are used)
+         */
+        void write(int value) {
+            if (size == buffer.length) { buffer = Arrays.copyOf(buffer, size * 2); }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBoolean(boolean value) { write(value ? 1 : 0); }
+
+        /**
+         * Writes an unsigned int using 7 bits per byte, the high bit set on all
+         * but the last byte.
+         * @param value the value to write
+         */
+        void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeFloat(float value) { writeInt(Float.floatToRawIntBits(value)); }
+
+        void writeDouble(double value) { writeLong(Double.doubleToRawLongBits(value)); }
+
+        /**
+         * Writes a list of floats as the zigzag varint of the change in the
+         * change of their bits from one to the next. Values that change by
+         * about the same amount each time take a single byte.
+         * @param values the floats to write
+         * @param count the number of floats to write
+         */
+        void writeFloats(float[] values, int count) {
+            int lastBits = 0, lastChange = 0;
+            for (int i = 0; i < count; i++) {
+                int bits = Float.floatToRawIntBits(values[i]);
+                int change = bits - lastBits;
+                writeVarInt(GameRecorder.zigzag(change - lastChange));
+                lastBits = bits;
+                lastChange = change;
+            }
+        }
+    }
+
+    /**
+     * Reads the values of a snapshot from a byte array.
+     */
+    static final class Reader {
+        private final byte[] buffer;
+        private int position = 0;
+
+        Reader(byte[] buffer) { this.buffer = buffer; }
+
+        /**
+         * @return the next byte, from 0 to 255
+         * @throws IOException if there are no more bytes
+         */
+        int read() throws IOException {
+            if (position >= buffer.length) { throw new IOException("snapshot is too short"); }
+            return buffer[position++] & 0xFF;
+        }
+
+        boolean readBoolean() throws IOException { return read() != 0; }
+
+        int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = read();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) { return value; }
+            }
+            throw new IOException("varint is too long");
+        }
+
+        /**
+         * Reads the number of values in the lists that follow, checking that
+         * the rest of the snapshot is long enough to hold them before anything
+         * is made that large.
+         * @param bytesPerValue the fewest bytes each value takes up in the lists
+         * @return the number of values
+         * @throws IOException if the number is negative or too large for the rest of the snapshot
+         */
+        int readCount(int bytesPerValue) throws IOException {
+            int count = readVarInt();
+            if (count < 0 || count > (buffer.length - position) / bytesPerValue) {
+                throw new IOException("list is longer than the rest of the snapshot");
+            }
+            return count;
+        }
+
+        int readInt() throws IOException { return read() << 24 | read() << 16 | read() << 8 | read(); }
+
+        long readLong() throws IOException { return (long) readInt() << 32 | (readInt() & 0xFFFFFFFFL); }
+
+        float readFloat() throws IOException { return Float.intBitsToFloat(readInt()); }
+
+        double readDouble() throws IOException { return Double.longBitsToDouble(readLong()); }
+
+        /**
+         * Reads a list of floats written by Writer.writeFloats().
+         * @param values the array to read the floats into
+         * @param count the number of floats to read
+         * @throws IOException if the snapshot is too short
+         */
+        void readFloats(float[] values, int count) throws IOException {
+            int lastBits = 0, lastChange = 0;
+            for (int i = 0; i < count; i++) {
+                int zigzag = readVarInt();
+                int change = lastChange + ((zigzag >>> 1) ^ -(zigzag & 1));
+                int bits = lastBits + change;
+                values[i] = Float.intBitsToFloat(bits);
+                lastBits = bits;
+                lastChange = change;
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The input stage between the gravity sensor and the game. Each sensor
+ * sample is smoothed with a low-pass filter and the latest filtered sample is
+ * handed to the game loop without any locks. The game loop polls once per
+ * tick and only then turns the sample into a direction, so the (relatively
+ * expensive) angle is computed at most once per tick no matter how fast the
+ * sensor reports.
+ *
+ * When the device is held nearly flat the gravity along the screen is tiny
+ * and its direction is mostly noise, so samples inside the dead zone keep the
+ * previous direction.
+ *
+ * This also holds the rate the sensor should be registered at and how long
+ * the sensor may batch samples in its FIFO before waking the app.
+ */
+public class GravityInput {
+    /** Default time between sensor samples, in us (50 Hz) */
+    public final static int DEFAULT_SAMPLING_PERIOD_US = 20_000;
+
+    /** Default longest time the sensor may hold samples before reporting them, in us */
+    public final static int DEFAULT_MAX_REPORT_LATENCY_US = 40_000;
+
+    /** Default time constant of the low-pass filter, in ns */
+    public final static long DEFAULT_TIME_CONSTANT_NS = 50_000_000L;
+
+    /** Default gravity along the screen below which the direction is kept, in m/s^2 */
+    public final static float DEFAULT_DEAD_ZONE = 0.5f;
+
+    /** Value of latest before there is any sample */
+    private final static long NO_SAMPLE = Long.MIN_VALUE;
+
+    private final int samplingPeriodUs, maxReportLatencyUs;
+    private final long timeConstantNs;
+    private final float deadZone;
+
+    /** The filtered x and y, and the time of the last sample in ns; only used by the sensor thread */
+    private float filteredX, filteredY;
+    private long lastTimestamp = -1;
+
+    /** The latest filtered x and y packed into a long, written by the sensor thread and read by the game loop */
+    private final AtomicLong latest = new AtomicLong(NO_SAMPLE);
+
+    /** The last sample the game loop looked at and the direction computed from it; only used by the game loop */
+    private long lastPolled = NO_SAMPLE;
+    private double direction;
+
+    /**
+     * Create an input stage with the default settings.
+     */
+    public GravityInput() {
+        this(DEFAULT_SAMPLING_PERIOD_US, DEFAULT_MAX_REPORT_LATENCY_US, DEFAULT_TIME_CONSTANT_NS, DEFAULT_DEAD_ZONE);
+    }
+
+    /**
+     * Create an input stage.
+     * @param samplingPeriodUs time between sensor samples, in us
+     * @param maxReportLatencyUs longest time the sensor may hold samples before reporting them, in us
+     * @param timeConstantNs time constant of the low-pass filter in ns, 0 for no filtering
+     * @param deadZone gravity along the screen below which the direction is kept, in m/s^2
+     */
+    public GravityInput(int samplingPeriodUs, int maxReportLatencyUs, long timeConstantNs, float deadZone) {
+        this.samplingPeriodUs = samplingPeriodUs;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+        this.timeConstantNs = timeConstantNs;
+        this.deadZone = deadZone;
+    }
+
+    /**
+     * @return the time between sensor samples to register the sensor with, in us
+     */
+    public int getSamplingPeriodUs() { return samplingPeriodUs; }
+
+    /**
+     * @return the longest time the sensor may hold samples before reporting them, in us
+     */
+    public int getMaxReportLatencyUs() { return maxReportLatencyUs; }
+
+    /**
+     * Filters a new sample and makes it available to the game loop. Only one
+     * thread (the one the sensor reports on) may call this.
+     * @param x the gravity along the x axis of the screen, in m/s^2
+     * @param y the gravity along the y axis of the screen, in m/s^2
+     * @param timestamp the time of the sample, in ns
+     */
+    public void onSample(float x, float y, long timestamp) {
+        if (lastTimestamp < 0 || timeConstantNs <= 0) {
+            filteredX = x;
+            filteredY = y;
+        } else {
+            // Exponential smoothing weighted by the time since the last sample
+            long dt = Math.max(0, timestamp - lastTimestamp);
+            float a = (float) dt / (timeConstantNs + dt);
+            filteredX += a * (x - filteredX);
+            filteredY += a * (y - filteredY);
+        }
+        lastTimestamp = timestamp;
+        latest.lazySet(((long) Float.floatToRawIntBits(filteredX) << 32) | (Float.floatToRawIntBits(filteredY) & 0xFFFFFFFFL));
+    }
+
+    /**
+     * Checks for a new direction. Only one thread (the game loop) may call
+     * this, once per tick.
+     * @return true if a new filtered sample outside the dead zone has arrived
+     *         since the last poll, in which case getDirection() gives the new
+     *         direction
+     */
+    public boolean poll() {
+        long sample = latest.get();
+        if (sample == lastPolled) { return false; }
+        lastPolled = sample;
+        float x = Float.intBitsToFloat((int) (sample >>> 32));
+        float y = Float.intBitsToFloat((int) sample);
+        if (x*x + y*y < deadZone*deadZone) { return false; }
+        direction = Math.atan2(y, -x);
+        return true;
+    }
+
+    /**
+     * @return the direction from the latest sample outside the dead zone, in
+     *         radians, as given by the last successful poll()
+     */
+    public double getDirection() { return direction; }
+}
@@ -0,0 +1,92 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The app-wide store of high scores, one per difficulty key. The best score
+ * for each key is kept in memory so checking a new score is a single map
+ * lookup and never touches SharedPreferences. New high scores are only
+ * written out when flush() is called (at game over and when the game is
+ * paused), and all of the changes since the last flush go out in a single
+ * asynchronous apply().
+ *
+ * All methods are synchronized so the store can be used from a game thread.
+ */
+public class HighScores {
+    /** Name of the preferences file the high scores are stored in */
+    private final static String PREFERENCES_NAME = "edu.moravian.csci299.gravitysnake";
+
+    /** The one and only store */
+    private static HighScores instance;
+
+    /** The preferences the high scores are stored in */
+    private final SharedPreferences preferences;
+
+    /** The best score for each key that has been looked at */
+    private final Map<String, Integer> best = new HashMap<>();
+
+    /** The keys with a new high score that has not been written yet */
+    private final Set<String> dirty = new HashSet<>();
+
+    /**
+     * Gets the one and only store, creating it if needed.
+     * @param context any context from the app
+     * @return the store
+     */
+    public static synchronized HighScores getInstance(Context context) {
+        if (instance == null) {
+            instance = new HighScores(context.getApplicationContext()
+                    .getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    private HighScores(SharedPreferences preferences) { this.preferences = preferences; }
+
+    /**
+     * Gets the high score for a key, only reading it from the preferences the
+     * first time.
+     * @param key the high score key for a difficulty
+     * @return the high score, 0 if there is none yet
+     */
+    public synchronized int get(String key) {
+        Integer score = best.get(key);
+        if (score == null) {
+            score = preferences.getInt(key, 0);
+            best.put(key, score);
+        }
+        return score;
+    }
+
+    /**
+     * Offers a score, which becomes the new high score (in memory) if it beats
+     * the current one. Call this when the score changes, not every frame.
+     * @param key the high score key for a difficulty
+     * @param score the score
+     * @return true if the score is a new high score
+     */
+    public synchronized boolean offer(String key, int score) {
+        if (score <= get(key)) { return false; }
+        best.put(key, score);
+        dirty.add(key);
+        return true;
+    }
+
+    /**
+     * Writes all new high scores to the preferences in a single asynchronous
+     * apply(). Does nothing if there are no new high scores.
+     */
+    public synchronized void flush() {
+        if (dirty.isEmpty()) { return; }
+        SharedPreferences.Editor editor = preferences.edit();
+        for (String key : dirty) { editor.putInt(key, best.get(key)); }
+        editor.apply();
+        dirty.clear();
+    }
+}
@@ -0,0 +1,168 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Random;
+
+/**
+ * A coarse grid over the world that tracks which cells are far enough away
+ * from the snake to place an item in. It listens to the snake's body so it
+ * is kept up to date one piece at a time, and it keeps a list of the free
+ * cells so that a random free cell can be picked in constant time no matter
+ * how full the world is.
+ *
+ * A cell is free if no body piece is in any cell within `reach` cells of it,
+ * where reach is large enough that every point in a free cell is at least the
+ * clearance away from every body piece. Cells that are not inside the margin
+ * around the edge of the world are never free.
+ */
+public class OccupancyGrid implements Snake.BodyListener {
+    /** The width and height of each cell, in px */
+    private final float cellSize;
+
+    /** The number of columns and rows of cells */
+    private final int cols, rows;
+
+    /** The number of cells in each direction that a body piece blocks */
+    private final int reach;
+
+    /** The number of body pieces in each cell */
+    private final int[] pieces;
+
+    /** The number of cells within reach of each cell that have body pieces in them */
+    private final int[] blockers;
+
+    /** If each cell is at least partly inside the margin */
+    private final boolean[] usable;
+
+    /** The free cells (only the first freeCount are used) and the index of each cell in that list (-1 if not free) */
+    private final int[] free, freeIndex;
+    private int freeCount = 0;
+
+    /**
+     * Create a grid with every usable cell free.
+     * @param width the width of the world, in px
+     * @param height the height of the world, in px
+     * @param cellSize the width and height of each cell, in px
+     * @param clearance the closest any point in a free cell can be to a body piece, in px
+     * @param margin the closest any point in a free cell can be to the edge of the world, in px
+     */
+    public OccupancyGrid(int width, int height, float cellSize, float clearance, float margin) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.reach = (int) Math.ceil(clearance / cellSize);
+        int cells = cols * rows;
+        pieces = new int[cells];
+        blockers = new int[cells];
+        usable = new boolean[cells];
+        free = new int[cells];
+        freeIndex = new int[cells];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int cell = row * cols + col;
+                usable[cell] = col * cellSize < width - margin && (col + 1) * cellSize > margin &&
+                        row * cellSize < height - margin && (row + 1) * cellSize > margin;
+                freeIndex[cell] = -1;
+                if (usable[cell]) { addFree(cell); }
+            }
+        }
+    }
+
+    /**
+     * @return the width and height of each cell, in px
+     */
+    public float getCellSize() { return cellSize; }
+
+    /**
+     * @return the number of free cells
+     */
+    public int getFreeCount() { return freeCount; }
+
+    /**
+     * @param cell a cell
+     * @return the x coordinate of the left edge of the cell, in px
+     */
+    public float getCellLeft(int cell) { return (cell % cols) * cellSize; }
+
+    /**
+     * @param cell a cell
+     * @return the y coordinate of the top edge of the cell, in px
+     */
+    public float getCellTop(int cell) { return (cell / cols) * cellSize; }
+
+    /**
+     * Picks a free cell uniformly at random.
+     * @param random the random number generator to use
+     * @return the cell, or -1 if there are no free cells
+     */
+    public int randomFreeCell(Random random) {
+        return freeCount == 0 ? -1 : free[random.nextInt(freeCount)];
+    }
+
+    /**
+     * A body piece was added, which blocks all of the cells within reach if it
+     * is the first piece in its cell.
+     * @param x the x coordinate of the piece, in px
+     * @param y the y coordinate of the piece, in px
+     */
+    @Override
+    public void onPieceAdded(float x, float y) {
+        int cell = cellOf(x, y);
+        if (cell >= 0 && pieces[cell]++ == 0) { updateBlockers(cell, 1); }
+    }
+
+    /**
+     * A body piece was removed, which unblocks all of the cells within reach
+     * if it was the last piece in its cell.
+     * @param x the x coordinate of the piece, in px
+     * @param y the y coordinate of the piece, in px
+     */
+    @Override
+    public void onPieceRemoved(float x, float y) {
+        int cell = cellOf(x, y);
+        if (cell >= 0 && --pieces[cell] == 0) { updateBlockers(cell, -1); }
+    }
+
+    /**
+     * @return the cell that contains the point, or -1 if it is outside the world
+     */
+    private int cellOf(float x, float y) {
+        int col = (int) Math.floor(x / cellSize), row = (int) Math.floor(y / cellSize);
+        if (col < 0 || row < 0 || col >= cols || row >= rows) { return -1; }
+        return row * cols + col;
+    }
+
+    /**
+     * Changes the blocker count of every cell within reach of a cell, moving
+     * cells into and out of the free list as needed.
+     * @param cell the cell that became occupied or empty
+     * @param change 1 if it became occupied, -1 if it became empty
+     */
+    private void updateBlockers(int cell, int change) {
+        int col = cell % cols, row = cell / cols;
+        int minCol = Math.max(0, col - reach), maxCol = Math.min(cols - 1, col + reach);
+        int minRow = Math.max(0, row - reach), maxRow = Math.min(rows - 1, row + reach);
+        for (int r = minRow; r <= maxRow; r++) {
+            for (int c = minCol, other = r * cols + minCol; c <= maxCol; c++, other++) {
+                blockers[other] += change;
+                if (!usable[other]) { continue; }
+                if (change > 0 && blockers[other] == 1) { removeFree(other); }
+                else if (change < 0 && blockers[other] == 0) { addFree(other); }
+            }
+        }
+    }
+
+    /** Adds a cell to the end of the free list. */
+    private void addFree(int cell) {
+        freeIndex[cell] = freeCount;
+        free[freeCount++] = cell;
+    }
+
+    /** Removes a cell from the free list by moving the last free cell into its place. */
+    private void removeFree(int cell) {
+        int index = freeIndex[cell];
+        int last = free[--freeCount];
+        free[index] = last;
+        freeIndex[last] = index;
+        freeIndex[cell] = -1;
+    }
+}
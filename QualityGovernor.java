@@ -0,0 +1,251 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Watches how long each frame takes and steps the drawing and simulation
+ * quality up or down to stay within a frame time budget (the time between
+ * display refreshes, for example 16.6 ms at 60 Hz or 8.3 ms at 120 Hz). Each
+ * quality level sets:
+ * <ul>
+ *     <li>if the snake, food, and walls are drawn anti-aliased</li>
+ *     <li>the tolerance of the BodyDecimator, so lower levels draw fewer body points</li>
+ *     <li>the most simulation ticks run in a single frame when catching up after a hitch</li>
+ *     <li>if the debug overlay may be drawn (when it is turned on)</li>
+ * </ul>
+ * The frame times are looked at in windows of WINDOW_FRAMES frames. If the
+ * 90th percentile of a window is over the budget the quality goes down one
+ * level. It only goes back up after UPGRADE_WINDOWS windows in a row are all
+ * well under the budget (under UPGRADE_FRACTION of it), and the window starts
+ * over after every change, so the level does not bounce back and forth
+ * between two levels.
+ *
+ * Every change is kept in a short log of decisions that can be looked at,
+ * for example to see why a device ended up on a low level.
+ *
+ * This must only be used from the thread that draws the frames.
+ */
+public class QualityGovernor {
+    /** The quality levels, from best to fastest */
+    public final static int HIGH = 0, NORMAL = 1, LOW = 2, MINIMUM = 3, LEVEL_COUNT = 4;
+
+    /** The names of the levels, in order */
+    private final static String[] NAMES = { "high", "normal", "low", "minimum" };
+
+    /** The settings for each level */
+    private final static boolean[] ANTI_ALIAS = { true, false, false, false };
+    private final static float[] BODY_TOLERANCE_PX = { 0.5f, BodyDecimator.DEFAULT_TOLERANCE_PX, 2f, 4f };
+    private final static int[] MAX_CATCH_UP_TICKS = { SimulationClock.DEFAULT_MAX_CATCH_UP_TICKS,
+            SimulationClock.DEFAULT_MAX_CATCH_UP_TICKS, 3, 2 };
+    private final static boolean[] OVERLAY = { true, true, false, false };
+
+    /** The default budget, one frame at 60 Hz, in ns */
+    public final static long DEFAULT_BUDGET_NS = 16_666_667L;
+
+    /** The number of frames in each window */
+    public final static int WINDOW_FRAMES = 30;
+
+    /** The fraction of the budget every window must be under for the level to go up */
+    public final static double UPGRADE_FRACTION = 0.5;
+
+    /** The number of windows in a row that must be under UPGRADE_FRACTION of the budget for the level to go up */
+    public final static int UPGRADE_WINDOWS = 4;
+
+    /** The most decisions kept in the log */
+    private final static int MAX_DECISIONS = 32;
+
+    /**
+     * A change of level made by the governor.
+     */
+    public static final class Decision {
+        /** The time of the change, in ns */
+        public final long timeNanos;
+
+        /** The level before and after the change */
+        public final int from, to;
+
+        /** The 90th percentile frame time of the window that caused the change, in ns */
+        public final long p90Nanos;
+
+        /** The budget at the time, in ns */
+        public final long budgetNanos;
+
+        Decision(long timeNanos, int from, int to, long p90Nanos, long budgetNanos) {
+            this.timeNanos = timeNanos;
+            this.from = from;
+            this.to = to;
+            this.p90Nanos = p90Nanos;
+            this.budgetNanos = budgetNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%.3f s: %s -> %s (p90 %.2f ms, budget %.2f ms)", timeNanos / 1e9,
+                    NAMES[from], NAMES[to], p90Nanos / 1e6, budgetNanos / 1e6);
+        }
+    }
+
+    /** The frame time budget, in ns */
+    private long budgetNanos = DEFAULT_BUDGET_NS;
+
+    /** The current level */
+    private int level = NORMAL;
+
+    /** The frame times of the current window, in ns, and a scratch copy for sorting */
+    private final long[] window = new long[WINDOW_FRAMES], sorted = new long[WINDOW_FRAMES];
+    private int windowSize = 0;
+
+    /** The number of windows in a row that were well under the budget */
+    private int fastWindows = 0;
+
+    /** If the level is allowed to change */
+    private boolean enabled = true;
+
+    /** The last MAX_DECISIONS decisions (a ring) and the total number ever made */
+    private final Decision[] decisions = new Decision[MAX_DECISIONS];
+    private int decisionCount = 0;
+
+    /**
+     * @return the frame time budget, in ns
+     */
+    public long getBudgetNanos() { return budgetNanos; }
+
+    /**
+     * @param budgetNanos the frame time budget, in ns
+     */
+    public void setBudgetNanos(long budgetNanos) { this.budgetNanos = budgetNanos; }
+
+    /**
+     * Sets the budget to the time between refreshes of the display.
+     * @param framesPerSecond the refresh rate of the display, in Hz, ignored if not positive
+     */
+    public void setTargetFrameRate(float framesPerSecond) {
+        if (framesPerSecond > 0) { budgetNanos = Math.round(1e9 / framesPerSecond); }
+    }
+
+    /**
+     * @return true if the level is changed to fit the budget
+     */
+    public boolean isEnabled() { return enabled; }
+
+    /**
+     * @param enabled true to change the level to fit the budget, false to keep the current level
+     */
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    /**
+     * @return the current level, from HIGH to MINIMUM
+     */
+    public int getLevel() { return level; }
+
+    /**
+     * Sets the level directly, which also starts the measuring over. This is
+     * not logged as a decision.
+     * @param level the new level, from HIGH to MINIMUM
+     */
+    public void setLevel(int level) {
+        this.level = Math.max(HIGH, Math.min(MINIMUM, level));
+        windowSize = 0;
+        fastWindows = 0;
+    }
+
+    /**
+     * @param level one of the levels
+     * @return the name of the level
+     */
+    public static String getName(int level) { return NAMES[level]; }
+
+    /**
+     * @return true if the snake, food, and walls should be drawn anti-aliased at the current level
+     */
+    public boolean isAntiAlias() { return ANTI_ALIAS[level]; }
+
+    /**
+     * @return the tolerance for the BodyDecimator at the current level, in px
+     */
+    public float getBodyTolerance() { return BODY_TOLERANCE_PX[level]; }
+
+    /**
+     * @return the most simulation ticks to run in a single frame at the current level
+     */
+    public int getMaxCatchUpTicks() { return MAX_CATCH_UP_TICKS[level]; }
+
+    /**
+     * @return true if the debug overlay may be drawn at the current level
+     */
+    public boolean isOverlayAllowed() { return OVERLAY[level]; }
+
+    /**
+     * Records how long a frame took and changes the level at the end of each
+     * window if needed.
+     * @param now the current time, in ns
+     * @param frameNanos the time spent on the frame, in ns
+     * @return true if the level changed, so the new settings need to be applied
+     */
+    public boolean onFrame(long now, long frameNanos) {
+        window[windowSize++] = frameNanos;
+        if (windowSize < WINDOW_FRAMES) { return false; }
+        windowSize = 0;
+        if (!enabled) { return false; }
+
+        System.arraycopy(window, 0, sorted, 0, WINDOW_FRAMES);
+        Arrays.sort(sorted);
+        long p90 = sorted[WINDOW_FRAMES * 9 / 10];
+        if (p90 > budgetNanos) {
+            fastWindows = 0;
+            return level < MINIMUM && changeLevel(now, level + 1, p90);
+        }
+        if (p90 < budgetNanos * UPGRADE_FRACTION) {
+            if (++fastWindows >= UPGRADE_WINDOWS) {
+                fastWindows = 0;
+                return level > HIGH && changeLevel(now, level - 1, p90);
+            }
+        } else {
+            fastWindows = 0;
+        }
+        return false;
+    }
+
+    /**
+     * Changes the level and logs the decision.
+     * @param now the current time, in ns
+     * @param newLevel the new level
+     * @param p90 the 90th percentile frame time of the window that caused the change, in ns
+     * @return true
+     */
+    private boolean changeLevel(long now, int newLevel, long p90) {
+        decisions[decisionCount % MAX_DECISIONS] = new Decision(now, level, newLevel, p90, budgetNanos);
+        decisionCount++;
+        level = newLevel;
+        return true;
+    }
+
+    /**
+     * @return the total number of decisions (level changes) ever made
+     */
+    public int getDecisionCount() { return decisionCount; }
+
+    /**
+     * @return the most recent decisions (up to 32), oldest first
+     */
+    public List<Decision> getDecisions() {
+        int n = Math.min(decisionCount, MAX_DECISIONS);
+        List<Decision> list = new ArrayList<>(n);
+        for (int i = decisionCount - n; i < decisionCount; i++) { list.add(decisions[i % MAX_DECISIONS]); }
+        return list;
+    }
+
+    /**
+     * Gets a summary of the current level and the recent decisions.
+     * @return the summary, one line for the level and one for each decision
+     */
+    public String summary() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "quality %s, budget %.2f ms, %d decisions%n",
+                NAMES[level], budgetNanos / 1e6, decisionCount));
+        for (Decision decision : getDecisions()) { sb.append("  ").append(decision).append(String.format("%n")); }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,98 @@
+package edu.moravian.csci299.gravitysnake;
+
+/**
+ * A fixed timestep clock for the simulation. Each frame the amount of real
+ * time that has passed is added to an accumulator and the simulation is
+ * updated once for each whole tick in the accumulator. The leftover fraction
+ * of a tick is used to interpolate when drawing. This makes the speed of the
+ * game the same no matter the refresh rate of the display or how many frames
+ * are dropped.
+ *
+ * If too much time has passed (for example after a long hitch) the number of
+ * ticks is capped and the extra time is dropped so the game does not spend
+ * several frames trying to catch up.
+ */
+public class SimulationClock {
+    /** The number of ticks per second the game is tuned for */
+    public final static double DEFAULT_TICKS_PER_SECOND = 60.0;
+
+    /** The default maximum number of ticks to run in a single frame */
+    public final static int DEFAULT_MAX_CATCH_UP_TICKS = 5;
+
+    /** The length of each tick, in ns */
+    private final long tickNanos;
+
+    /** The maximum number of ticks to run in a single frame */
+    private int maxCatchUpTicks;
+
+    /** The time of the last frame in ns or -1 if there has not been one */
+    private long lastTime = -1;
+
+    /** The amount of time not yet simulated, in ns */
+    private long accumulator = 0;
+
+    /**
+     * Create a clock with the default tick rate and catch-up limit.
+     */
+    public SimulationClock() { this(DEFAULT_TICKS_PER_SECOND, DEFAULT_MAX_CATCH_UP_TICKS); }
+
+    /**
+     * Create a clock.
+     * @param ticksPerSecond the number of simulation ticks per second
+     * @param maxCatchUpTicks the maximum number of ticks to run in a single frame
+     */
+    public SimulationClock(double ticksPerSecond, int maxCatchUpTicks) {
+        this.tickNanos = Math.round(1e9 / ticksPerSecond);
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * @return the length of each tick, in ns
+     */
+    public long getTickNanos() { return tickNanos; }
+
+    /**
+     * @return the maximum number of ticks to run in a single frame
+     */
+    public int getMaxCatchUpTicks() { return maxCatchUpTicks; }
+
+    /**
+     * @param maxCatchUpTicks the new maximum number of ticks to run in a single frame
+     */
+    public void setMaxCatchUpTicks(int maxCatchUpTicks) { this.maxCatchUpTicks = maxCatchUpTicks; }
+
+    /**
+     * Advance the clock to the current time.
+     * @param now the current time in ns, from System.nanoTime() or a frame time
+     * @return the number of simulation ticks that need to be run
+     */
+    public int advance(long now) {
+        if (lastTime < 0) { lastTime = now; return 0; }
+        accumulator += Math.max(0, now - lastTime);
+        lastTime = now;
+        long ticks = accumulator / tickNanos;
+        if (ticks > maxCatchUpTicks) {
+            // Too far behind, drop the time that can't be caught up
+            accumulator %= tickNanos;
+            return maxCatchUpTicks;
+        }
+        accumulator -= ticks * tickNanos;
+        return (int) ticks;
+    }
+
+    /**
+     * Gets how far between the last tick and the next tick the current time
+     * is, used for interpolating when drawing.
+     * @return a value from 0 (at the last tick) to 1 (at the next tick)
+     */
+    public float getAlpha() { return (float) accumulator / tickNanos; }
+
+    /**
+     * Reset the clock so that the next call to advance() starts timing over.
+     * This should be done whenever the game is paused.
+     */
+    public void reset() {
+        lastTime = -1;
+        accumulator = 0;
+    }
+}
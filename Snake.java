@@ -2,8 +2,8 @@ package edu.moravian.csci299.gravitysnake;
 
 import android.graphics.PointF;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.IOException;
+import java.util.AbstractList;
 import java.util.List;
 
 import static edu.moravian.csci299.gravitysnake.Util.*;
@@ -23,11 +23,58 @@ public class Snake {
     /** Distance that is moved each actual movement, in dp */
     public final static float STEP_DISTANCE_DP = 2.5f;
 
+    /** Initial capacity of the body buffers, must be a power of 2 */
+    private final static int INITIAL_CAPACITY = 64;
+
+    /**
+     * The points that make up the body, stored as a circular buffer of x and
+     * y coordinates in units of pixels. Each point is given a sequence number
+     * when it is added as the head and is stored at index (sequence & mask).
+     * The head has the sequence number headSeq and body piece i (with 0 being
+     * the head) has the sequence number headSeq - i. Adding a head and
+     * removing the tail are both constant time and never allocate unless the
+     * buffers are full, in which case they double in size.
+     */
+    private float[] bodyX = new float[INITIAL_CAPACITY], bodyY = new float[INITIAL_CAPACITY];
+
+    /** The mask for converting a sequence number into an index in the buffers */
+    private int mask = INITIAL_CAPACITY - 1;
+
+    /** The sequence number of the head */
+    private int headSeq = 0;
+
+    /** The number of points currently in the body */
+    private int size = 0;
+
+    /** Number of buckets in the spatial index of the body, must be a power of 2 */
+    private final static int GRID_BUCKETS = 2048;
+
     /**
-     * The points that make up the body. The point at position 0 is the head.
-     * Each of these points are stored using units of pixels
+     * Spatial index of the body points, each stored with its sequence number
+     * as the id. Kept up to date as heads are added and tails are removed.
      */
-    private final List<PointF> body = new ArrayList<>();
+    private final SpatialGrid grid;
+
+    /**
+     * Something that wants to know each time a body piece is added or
+     * removed, such as an OccupancyGrid.
+     */
+    public interface BodyListener {
+        /**
+         * @param x the x coordinate of the new piece, in px
+         * @param y the y coordinate of the new piece, in px
+         */
+        void onPieceAdded(float x, float y);
+
+        /**
+         * @param x the x coordinate of the removed piece, in px
+         * @param y the y coordinate of the removed piece, in px
+         */
+        void onPieceRemoved(float x, float y);
+    }
+
+    /** The listener told about each body piece added and removed, or null */
+    private BodyListener bodyListener;
 
     /**
      * The distance to be travelled. This is needed since the snake actually
@@ -35,6 +82,26 @@ public class Snake {
      */
     private double distXToTravel = 0.0, distYToTravel = 0.0;
 
+    /**
+     * The position of the head kept in full precision, so that rounding the
+     * body points to floats never builds up over a long game.
+     */
+    private double headX, headY;
+
+    /**
+     * The head before the last move and the number of steps taken by it. The
+     * head moved in a straight line from here, through each step, to the
+     * current head, which is the path swept by the head in the last move.
+     */
+    private float pathStartX, pathStartY;
+    private int pathSteps;
+
+    /** The number of body pieces right behind the head that never count as the head hitting itself */
+    private final static int SELF_IGNORED_PIECES = 20;
+
+    /** The last direction moved in, in radians, and its unit vector */
+    private double cachedDirection = 0.0, unitX = 1.0, unitY = 0.0;
+
     /**
      * The number of body pieces to add while the snake is moving forward.
      */
@@ -53,59 +120,260 @@ public class Snake {
      * @param startingLength the initial length of the snake (added over time)
      */
     public Snake(PointF initial, float dpToPxFactor, int startingLength) {
-        body.add(initial);
         this.dpToPxFactor = dpToPxFactor;
+        grid = new SpatialGrid(2 * BODY_PIECE_SIZE_DP * dpToPxFactor, GRID_BUCKETS);
+        bodyX[0] = initial.x;
+        bodyY[0] = initial.y;
+        headX = initial.x;
+        headY = initial.y;
+        size = 1;
+        pathStartX = initial.x;
+        pathStartY = initial.y;
+        grid.insert(headSeq, initial.x, initial.y);
         this.piecesToAdd = startingLength;
     }
 
+    /**
+     * Create a snake from a snapshot written by writeSnapshot().
+     * @param in the snapshot to read from
+     * @throws IOException if the snapshot is not valid
+     */
+    Snake(GameSnapshot.Reader in) throws IOException {
+        dpToPxFactor = in.readFloat();
+        grid = new SpatialGrid(2 * BODY_PIECE_SIZE_DP * dpToPxFactor, GRID_BUCKETS);
+        piecesToAdd = in.readVarInt();
+        distXToTravel = in.readDouble();
+        distYToTravel = in.readDouble();
+        headX = in.readDouble();
+        headY = in.readDouble();
+        cachedDirection = in.readDouble();
+        unitX = Math.cos(cachedDirection);
+        unitY = Math.sin(cachedDirection);
+        int count = in.readCount(2); // the x and y of each body point take at least a byte each
+        if (count == 0) { throw new IOException("snake has no body"); }
+        float[] xs = new float[count], ys = new float[count];
+        in.readFloats(xs, count);
+        in.readFloats(ys, count);
+        int capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(count - 1) << 1);
+        bodyX = new float[capacity];
+        bodyY = new float[capacity];
+        mask = capacity - 1;
+        headSeq = -1;
+        for (int i = 0; i < count; i++) { addHead(xs[i], ys[i]); } // from the tail to the head
+        pathStartX = getBodyX(0);
+        pathStartY = getBodyY(0);
+    }
+
+    /**
+     * Writes everything about the snake to a snapshot: the body points (from
+     * the tail to the head), the pieces still to be added, and the distance
+     * still to be travelled.
+     * @param out the snapshot to write to
+     */
+    void writeSnapshot(GameSnapshot.Writer out) {
+        out.writeFloat(dpToPxFactor);
+        out.writeVarInt(piecesToAdd);
+        out.writeDouble(distXToTravel);
+        out.writeDouble(distYToTravel);
+        out.writeDouble(headX);
+        out.writeDouble(headY);
+        out.writeDouble(cachedDirection);
+        out.writeVarInt(size);
+        float[] xs = new float[size], ys = new float[size];
+        copyBody(xs, ys);
+        out.writeFloats(xs, size);
+        out.writeFloats(ys, size);
+    }
+
+    /**
+     * Copies the body points into arrays, from the tail to the head (so the
+     * head is at index getBodySize() - 1). This is at most two array copies
+     * out of the body buffers.
+     * @param xs the array to copy the x coordinates into, at least getBodySize() long
+     * @param ys the array to copy the y coordinates into, at least getBodySize() long
+     */
+    void copyBody(float[] xs, float[] ys) {
+        int tail = (headSeq - size + 1) & mask;
+        int first = Math.min(size, bodyX.length - tail); // the points before the buffers wrap around
+        System.arraycopy(bodyX, tail, xs, 0, first);
+        System.arraycopy(bodyY, tail, ys, 0, first);
+        System.arraycopy(bodyX, 0, xs, first, size - first);
+        System.arraycopy(bodyY, 0, ys, first, size - first);
+    }
+
+    /**
+     * Sets the listener that is told each time a body piece is added or
+     * removed. The listener is first told about every piece already in the
+     * body so it starts out up to date.
+     * @param listener the listener, or null for none
+     */
+    public void setBodyListener(BodyListener listener) {
+        bodyListener = listener;
+        if (listener != null) {
+            for (int i = size - 1; i >= 0; i--) { listener.onPieceAdded(getBodyX(i), getBodyY(i)); }
+        }
+    }
+
     /**
      * @return the length of the snake, including any pieces yet to be added
      */
-    public int getLength() { return body.size() + piecesToAdd; }
+    public int getLength() { return size + piecesToAdd; }
+
+    /**
+     * @return the number of body points currently in the snake
+     */
+    public int getBodySize() { return size; }
+
+    /**
+     * @param i the index of the body point, 0 is the head
+     * @return the x coordinate of the body point, in px
+     */
+    public float getBodyX(int i) { return bodyX[(headSeq - i) & mask]; }
 
     /**
+     * @param i the index of the body point, 0 is the head
+     * @return the y coordinate of the body point, in px
+     */
+    public float getBodyY(int i) { return bodyY[(headSeq - i) & mask]; }
+
+    /**
+     * Gets a read-only view of the body points currently in the snake. Each
+     * call to get() on the list creates a new point, so this is not meant for
+     * the hot path: the game and the renderer use the primitive accessors
+     * getBodyX() and getBodyY() instead.
      * @return the list of body points currently in the snake
      */
-    public List<PointF> getBody() { return Collections.unmodifiableList(body); }
+    public List<PointF> getBody() {
+        return new AbstractList<PointF>() {
+            @Override
+            public PointF get(int i) {
+                if (i < 0 || i >= size) { throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size); }
+                return new PointF(getBodyX(i), getBodyY(i));
+            }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    /**
+     * @return the x coordinate of the head before the last move, in px
+     */
+    public float getPathStartX() { return pathStartX; }
+
+    /**
+     * @return the y coordinate of the head before the last move, in px
+     */
+    public float getPathStartY() { return pathStartY; }
 
     /**
-     * Moves the snake forward.
+     * @return the x distance still to be travelled (carried to the next move), in px
+     */
+    double getDistXToTravel() { return distXToTravel; }
+
+    /**
+     * @return the y distance still to be travelled (carried to the next move), in px
+     */
+    double getDistYToTravel() { return distYToTravel; }
+
+    /**
+     * Moves the snake forward. The distance is added to the distance still to
+     * be travelled and then as many whole steps as fit are taken along it,
+     * with whatever is left over carried to the next move. The unit vector of
+     * the direction is only recomputed when the direction changes, so a move
+     * never needs any trigonometry when the direction is the same as last
+     * time.
      * @param direction the direction of movement, in radians
      * @param distance the distance of the movement, in pixels
+     * @return the number of steps taken (i.e. the number of new heads added)
      */
-    public void move(double direction, double distance) {
+    public int move(double direction, double distance) {
+        if (direction != cachedDirection) {
+            cachedDirection = direction;
+            unitX = Math.cos(direction);
+            unitY = Math.sin(direction);
+        }
+
+        pathStartX = getBodyX(0);
+        pathStartY = getBodyY(0);
+
         // Update the distance to be travelled
-        distXToTravel += Math.cos(direction) * distance;
-        distYToTravel += Math.sin(direction) * distance;
+        distXToTravel += unitX * distance;
+        distYToTravel += unitY * distance;
 
-        // Move the snake as much of the distance as possible
+        // Move the snake as many whole steps as possible along the distance to travel
         final double stepDist = STEP_DISTANCE_DP * dpToPxFactor; // distance of each step
-        double distTotal = Math.hypot(distYToTravel, distXToTravel); // total distance to travel
-        if (distTotal >= stepDist) {
-            double angle = Math.atan2(distYToTravel, distXToTravel); // angle to travel at
-            double stepXDist = stepDist * Math.cos(angle); // step distance in X direction
-            double stepYDist = stepDist * Math.sin(angle); // step distance in Y direction
-            while (distTotal >= stepDist) { // while the distance to travel is at least one step
-                // Remove this distance from the remaining distance to travel
-                distTotal -= stepDist;
-
-                // Create and add the new head to the start of the body
-                PointF newHead = new PointF(body.get(0).x, body.get(0).y);
-                newHead.offset((float) stepXDist, (float) stepYDist);
-                body.add(0, newHead);
-
+        double distTotal = Math.sqrt(distXToTravel*distXToTravel + distYToTravel*distYToTravel);
+        int steps = (int) (distTotal / stepDist);
+        if (steps > 0) {
+            double stepXDist = distXToTravel / distTotal * stepDist; // step distance in X direction
+            double stepYDist = distYToTravel / distTotal * stepDist; // step distance in Y direction
+            for (int i = 1; i <= steps; i++) {
                 // Remove the tail (if there are no pieces to be added)
                 if (piecesToAdd == 0) {
-                    body.remove(body.size() - 1);
+                    removeTail();
                 } else {
                     piecesToAdd -= 1; // the tail is the new piece
                 }
+
+                // Add the new head to the start of the body (measured from the
+                // starting point so rounding does not build up over the steps)
+                addHead((float) (headX + i * stepXDist), (float) (headY + i * stepYDist));
             }
+            headX += steps * stepXDist;
+            headY += steps * stepYDist;
 
-            // Update the remaining distance
-            distXToTravel = distTotal * Math.cos(angle);
-            distYToTravel = distTotal * Math.cos(angle);
+            // Carry the remaining distance, which is still in the same direction
+            distXToTravel -= steps * stepXDist;
+            distYToTravel -= steps * stepYDist;
         }
+        pathSteps = steps;
+        return steps;
+    }
+
+    /**
+     * Adds a new head to the start of the body, growing the buffers if they
+     * are full.
+     * @param x the x coordinate of the new head, in px
+     * @param y the y coordinate of the new head, in px
+     */
+    private void addHead(float x, float y) {
+        if (size == bodyX.length) { grow(); }
+        headSeq++;
+        bodyX[headSeq & mask] = x;
+        bodyY[headSeq & mask] = y;
+        size++;
+        grid.insert(headSeq, x, y);
+        if (bodyListener != null) { bodyListener.onPieceAdded(x, y); }
+    }
+
+    /**
+     * Removes the last point of the body.
+     */
+    private void removeTail() {
+        int tailSeq = headSeq - size + 1;
+        float x = bodyX[tailSeq & mask], y = bodyY[tailSeq & mask];
+        grid.remove(tailSeq, x, y);
+        size--;
+        if (bodyListener != null) { bodyListener.onPieceRemoved(x, y); }
+    }
+
+    /**
+     * Doubles the capacity of the body buffers, keeping each point at the
+     * index given by its sequence number.
+     */
+    private void grow() {
+        int capacity = bodyX.length * 2;
+        int newMask = capacity - 1;
+        float[] newX = new float[capacity], newY = new float[capacity];
+        for (int i = 0; i < size; i++) {
+            int seq = headSeq - i;
+            newX[seq & newMask] = bodyX[seq & mask];
+            newY[seq & newMask] = bodyY[seq & mask];
+        }
+        bodyX = newX;
+        bodyY = newY;
+        mask = newMask;
     }
 
     /**
@@ -126,7 +394,57 @@ public class Snake {
      */
     public boolean headIntersectsSelf() {
         // For more aggressive/accurate it should be "2 *" in the next line, not "0.5 *"
-        return anyWithinRange(body, body.get(0), 0.5 * BODY_PIECE_SIZE_DP * dpToPxFactor, 20);
+        return grid.anyWithinRange(getBodyX(0), getBodyY(0), 0.5 * BODY_PIECE_SIZE_DP * dpToPxFactor, headSeq, SELF_IGNORED_PIECES);
+    }
+
+    /**
+     * Checks if the head hit the body anywhere along the path it swept in the
+     * last move, not just where it ended up, so a fast snake can't pass
+     * through its own body between steps. Along the path, the pieces added
+     * by the move and the SELF_IGNORED_PIECES before them are ignored (the
+     * ones that were right behind the head when it started the move), and the
+     * final head position is checked as in headIntersectsSelf().
+     *
+     * @return true if the snake intersected itself during the last move
+     */
+    public boolean pathIntersectsSelf() {
+        if (headIntersectsSelf()) { return true; }
+        return pathSteps > 1 && grid.anyWithinRangeOfSegment(pathStartX, pathStartY, getBodyX(0), getBodyY(0),
+                0.5 * BODY_PIECE_SIZE_DP * dpToPxFactor, headSeq, pathSteps - 1 + SELF_IGNORED_PIECES);
+    }
+
+    /**
+     * Checks if the head touched the given circular item anywhere along the
+     * path it swept in the last move.
+     * @param location the location of the item, in px
+     * @param radius the radius of the item, in px
+     * @return true if the snake intersected the given circular item during the last move
+     */
+    public boolean pathIntersectsItem(PointF location, float radius) { return pathIntersectsItem(location.x, location.y, radius); }
+
+    /**
+     * Checks if the head touched the given circular item anywhere along the
+     * path it swept in the last move.
+     * @param x the x coordinate of the item, in px
+     * @param y the y coordinate of the item, in px
+     * @param radius the radius of the item, in px
+     * @return true if the snake intersected the given circular item during the last move
+     */
+    public boolean pathIntersectsItem(float x, float y, float radius) {
+        return withinRangeOfSegment(x, y, pathStartX, pathStartY, getBodyX(0), getBodyY(0), BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
+    }
+
+    /**
+     * Checks if the head touched any of the walls in the store anywhere along
+     * the path it swept in the last move. Only the walls near the path are
+     * looked at.
+     * @param walls the walls, in px
+     * @param radius the radius of the walls, in px
+     * @return true if the snake intersected any of the walls during the last move
+     */
+    public boolean pathIntersectsAnyItem(WallStore walls, float radius) {
+        return walls.anyWithinRangeOfSegment(pathStartX, pathStartY, getBodyX(0), getBodyY(0),
+                BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
     }
 
     /**
@@ -136,7 +454,7 @@ public class Snake {
      * @return true if the snake intersections the given circular item
      */
     public boolean headIntersectsItem(PointF location, float radius) {
-        return withinRange(body.get(0), location, BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
+        return withinRange(getBodyX(0), getBodyY(0), location.x, location.y, BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
     }
 
     /**
@@ -146,7 +464,29 @@ public class Snake {
      * @return true if the snake intersections any of the given circular items
      */
     public boolean headIntersectsAnyItem(List<PointF> locations, float radius) {
-        return anyWithinRange(locations, body.get(0), BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
+        return anyWithinRange(locations, getBodyX(0), getBodyY(0), BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
+    }
+
+    /**
+     * Checks if the snake head intersects any of the circular items in the
+     * given spatial index. Only the items near the head are looked at.
+     * @param items the spatial index of the locations of the items, in px
+     * @param radius the radius of the items, in px
+     * @return true if the snake intersections any of the given circular items
+     */
+    public boolean headIntersectsAnyItem(SpatialGrid items, float radius) {
+        return items.anyWithinRange(getBodyX(0), getBodyY(0), BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
+    }
+
+    /**
+     * Checks if the snake head intersects any of the walls in the store. Only
+     * the walls near the head are looked at.
+     * @param walls the walls, in px
+     * @param radius the radius of the walls, in px
+     * @return true if the snake intersections any of the walls
+     */
+    public boolean headIntersectsAnyItem(WallStore walls, float radius) {
+        return walls.anyWithinRange(getBodyX(0), getBodyY(0), BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
     }
 
     /**
@@ -158,12 +498,12 @@ public class Snake {
      * @return true if the snake is out of bounds
      */
     public boolean headIsOutOfBounds(int width, int height) {
-        PointF head = body.get(0);
-        return head.x < 0 || head.y < 0 || head.x >= width || head.y >= height;
+        float headX = getBodyX(0), headY = getBodyY(0);
+        return headX < 0 || headY < 0 || headX >= width || headY >= height;
 
         // If forcing whole head in bounds:
         //final double size = BODY_PIECE_SIZE_DP * dpToPxFactor;
-        //return head.x < size || head.y < size || head.x + size > width || head.y + size > height;
+        //return headX < size || headY < size || headX + size > width || headY + size > height;
     }
 
     /**
@@ -173,29 +513,30 @@ public class Snake {
      * @return true if the snake intersections the given circular item
      */
     public boolean bodyIntersectsItem(PointF location, float radius) {
-        return anyWithinRange(body, location, BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
+        return bodyIntersectsItem(location.x, location.y, radius);
     }
 
     /**
-     * Checks if any point in the list is within range of a point.
-     * @return true if withinRange(a, b, range) is true for any of the points in the list
+     * Checks if the snake head or body intersects the given circular item.
+     * @param x the x coordinate of the item, in px
+     * @param y the y coordinate of the item, in px
+     * @param radius the radius of the item, in px
+     * @return true if the snake intersections the given circular item
      */
-    private static boolean anyWithinRange(List<PointF> pts, PointF point, double range) {
-        return pts.stream().anyMatch(pt -> withinRange(pt, point, range));
-        // Same as:
-        //for (PointF pt : pts) { if (withinRange(pt, point, range)) { return true; } }
-        //return false;
+    public boolean bodyIntersectsItem(float x, float y, float radius) {
+        return grid.anyWithinRange(x, y, BODY_PIECE_SIZE_DP * dpToPxFactor + radius);
     }
 
     /**
-     * Checks if any point in the list (after the first `skip` elements) is within range of a point.
-     * @return true if withinRange(a, b, range) is true for any of the points in the list
-     *         (after skipping).
+     * Checks if any point in the list is within range of a point. This uses
+     * an index-based loop so that no iterator is created.
+     * @return true if withinRange(pt, x, y, range) is true for any of the points in the list
      */
-    private static boolean anyWithinRange(List<PointF> pts, PointF point, double range, int skip) {
-        return pts.stream().skip(skip).anyMatch(pt -> withinRange(pt, point, range));
-        // Same as:
-        //for (int i = skip; i < pts.size(); i++) { if (withinRange(pts.get(i), point, range)) { return true; } }
-        //return false;
+    private static boolean anyWithinRange(List<PointF> pts, float x, float y, double range) {
+        for (int i = 0, n = pts.size(); i < n; i++) {
+            PointF pt = pts.get(i);
+            if (withinRange(pt.x, pt.y, x, y, range)) { return true; }
+        }
+        return false;
     }
 }
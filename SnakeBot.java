@@ -0,0 +1,114 @@
+package edu.moravian.csci299.gravitysnake;
+
+/**
+ * A simple computer player for an Arena or a SnakeGame. Each tick it heads
+ * for the nearest food, but first looks a little way ahead in a handful of
+ * directions around the way it is going and avoids any that run into the edge
+ * of the world, a wall, another snake, or itself.
+ *
+ * Steering only reads the world, so the bots of all of the snakes in an arena
+ * can steer at the same time on different threads.
+ */
+public class SnakeBot {
+    /**
+     * What a bot needs to know about the world its snake is in. An Arena
+     * provides it for each of its snakes and a SnakeGame for its only snake
+     * (index 0).
+     */
+    public interface World {
+        /**
+         * @param snake the index of the snake
+         * @return the x coordinate of the snake's head, in px
+         */
+        float getHeadX(int snake);
+
+        /**
+         * @param snake the index of the snake
+         * @return the y coordinate of the snake's head, in px
+         */
+        float getHeadY(int snake);
+
+        /**
+         * @param snake the index of the snake
+         * @return the direction the snake is moving, in radians
+         */
+        double getDirection(int snake);
+
+        /**
+         * @return the number of foods
+         */
+        int getFoodCount();
+
+        /**
+         * @param i the index of a food
+         * @return the x coordinate of the food, in px
+         */
+        float getFoodX(int i);
+
+        /**
+         * @param i the index of a food
+         * @return the y coordinate of the food, in px
+         */
+        float getFoodY(int i);
+
+        /**
+         * @return the factor to convert dp to px
+         */
+        float getDpToPxFactor();
+
+        /**
+         * @param x the x coordinate of the point, in px
+         * @param y the y coordinate of the point, in px
+         * @param snake the index of the snake
+         * @return true if the snake's head would hit something (or be out of the world) at the point
+         */
+        boolean isBlocked(float x, float y, int snake);
+    }
+
+    /** The number of directions looked at on each side of the current direction */
+    private final static int TURNS = 3;
+
+    /** The angle between the directions looked at, in radians */
+    private final static double TURN_ANGLE = Math.PI / 8;
+
+    /** How far ahead to look, in body piece radii */
+    private final static float LOOKAHEAD_RADII = 3;
+
+    /**
+     * Picks the direction for a snake to move this tick.
+     * @param world the world the snake is in
+     * @param snake the index of the snake in the world
+     * @return the direction to move, in radians
+     */
+    public double steer(World world, int snake) {
+        float headX = world.getHeadX(snake), headY = world.getHeadY(snake);
+        double current = world.getDirection(snake);
+
+        // Find the nearest food
+        double target = current;
+        float bestDistSq = Float.MAX_VALUE;
+        for (int i = 0, n = world.getFoodCount(); i < n; i++) {
+            float dx = world.getFoodX(i) - headX, dy = world.getFoodY(i) - headY;
+            float distSq = dx*dx + dy*dy;
+            if (distSq < bestDistSq) {
+                bestDistSq = distSq;
+                target = Math.atan2(dy, dx);
+            }
+        }
+
+        // Pick the clear direction closest to the food, going straight if nothing is clear
+        float lookahead = LOOKAHEAD_RADII * Snake.BODY_PIECE_SIZE_DP * world.getDpToPxFactor();
+        double best = current, bestCost = Double.MAX_VALUE;
+        for (int i = -TURNS; i <= TURNS; i++) {
+            double angle = current + i * TURN_ANGLE;
+            float x = headX + (float) (Math.cos(angle) * lookahead), y = headY + (float) (Math.sin(angle) * lookahead);
+            if (world.isBlocked(x, y, snake)) { continue; }
+            double cost = Math.abs(Math.IEEEremainder(target - angle, 2 * Math.PI));
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = angle;
+            }
+        }
+        return Math.IEEEremainder(best, 2 * Math.PI);
+    }
+}
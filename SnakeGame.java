@@ -2,9 +2,7 @@ package edu.moravian.csci299.gravitysnake;
 
 import android.graphics.PointF;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.io.IOException;
 import java.util.Random;
 
 import static edu.moravian.csci299.gravitysnake.Util.withinRange;
@@ -17,9 +15,19 @@ import static edu.moravian.csci299.gravitysnake.Util.withinRange;
  * NOTE: This class is complete, but you may to need look over the public
  * methods to use them.
  */
-public class SnakeGame {
-    /** The one and only random number generator for any game */
-    private final static Random random = new Random();
+public class SnakeGame implements SnakeBot.World {
+    /** Generates the seeds for games that are not given one */
+    private final static Random seeds = new Random();
+
+    /**
+     * The random number generator for this game. It is re-seeded at the start
+     * of each game so the same seed and the same input always give the same
+     * game, and its state is saved in snapshots.
+     */
+    private final SavableRandom random = new SavableRandom();
+
+    /** The seed the current game was started with */
+    private long seed;
 
     /** Radius of each food item in dp */
     public final static float FOOD_SIZE_DP = 15f;
@@ -36,25 +44,62 @@ public class SnakeGame {
     /** If the game is over */
     private boolean gameOver = true;
 
+    /**
+     * Something that wants to know when things happen in the game, for
+     * example to play sound effects. The methods are called on whatever thread
+     * updates the game so they should return quickly.
+     */
+    public interface Listener {
+        /** The snake ate the food. */
+        void onFoodEaten();
+
+        /**
+         * Walls were removed by a touch.
+         * @param count the number of walls removed
+         */
+        void onWallsCleared(int count);
+
+        /** The snake died and the game is over. */
+        void onGameOver();
+    }
+
+    /** The listener told about things happening in the game, or null */
+    private Listener listener;
+
     /** The snake moving around the game */
     private Snake snake;
 
     /** The direction the snake is moving */
     private double direction;
 
-    /** Location of the current food, in px */
-    private PointF food;
+    /** Location of the current food, in px (reused each time the food moves) */
+    private final PointF food = new PointF();
+
+    /** Scratch point for placing a new wall */
+    private final PointF wallPoint = new PointF();
+
+    /** Scratch flags for which points of a batch of touches are on the snake */
+    private boolean[] touchOnSnake = new boolean[TouchBatch.DEFAULT_CAPACITY];
 
     /** Number of foods eaten (i.e. the score) */
     private int score = 0;
 
-    /** Initial speed of the snake, in dp/frame */
+    /**
+     * Counts every change to the food, the walls, or the score so that things
+     * drawn from them can be cached until it changes
+     */
+    private int version = 0;
+
+    /** Number of steps the snake took during the last update */
+    private int stepsLastUpdate = 0;
+
+    /** Initial speed of the snake, in dp/tick */
     private double initialSpeed = 2.5;
 
     /** How much the speed increases each time a food is eaten */
     private double speedIncreasePerFood = 0.0;
 
-    /** Speed of the snake, in dp/frame */
+    /** Speed of the snake, in dp/tick */
     private double speed = 2.5;
 
     /** Number of pieces the snake is at the beginning of each game */
@@ -63,11 +108,36 @@ public class SnakeGame {
     /** Number of pieces to add to the snake each time a food is eaten */
     private int lengthIncreasePerFood = 8;
 
-    /** Probability to place a new wall each frame */
+    /** Probability to place a new wall each tick */
     private double wallPlacementProbability = 0.005;
 
-    /** Locations of all of the walls, each in px */
-    private final List<PointF> walls = new ArrayList<>();
+    /** Number of buckets in the spatial index of the walls, must be a power of 2 */
+    private final static int WALL_GRID_BUCKETS = 1024;
+
+    /** Locations of all of the walls, each in px, along with a spatial index of them */
+    private WallStore walls;
+
+    /**
+     * The cells of the world that are far enough from the snake to place food
+     * or a wall in. The clearance and margin are for food (the larger item) so
+     * any free cell works for both.
+     */
+    private OccupancyGrid occupancy;
+
+    /**
+     * Number of extra random points to try if no free cell works (the free
+     * cells are a little more cautious than needed so there may still be
+     * room left)
+     */
+    private final static int FALLBACK_ATTEMPTS = 32;
+
+    /**
+     * The largest world, in px, and the range of dp to px factors accepted
+     * from a snapshot, so that a damaged snapshot cannot ask for a huge
+     * occupancy grid
+     */
+    private final static int MAX_SNAPSHOT_WORLD_PX = 1 << 14;
+    private final static float MIN_SNAPSHOT_DP_TO_PX = 0.5f, MAX_SNAPSHOT_DP_TO_PX = 8f;
 
     /**
      * Converts dp to px, for example, FOOD_SIZE_DP will always be multiplied
@@ -80,6 +150,11 @@ public class SnakeGame {
      */
     public boolean hasNotStarted() { return snake == null; }
 
+    /**
+     * @param listener the listener to tell about things happening in the game, or null for none
+     */
+    public void setListener(Listener listener) { this.listener = listener; }
+
     /**
      * @return the current score (number of foods eaten)
      */
@@ -99,17 +174,187 @@ public class SnakeGame {
      * @param width the width of the playing area in px
      * @param height the height of the playing area in px
      */
-    public void startGame(int width, int height) {
+    public void startGame(int width, int height) { startGame(width, height, seeds.nextLong()); }
+
+    /**
+     * Start the game with a particular seed for the random number generator.
+     * Starting with the same seed and giving the same input each update will
+     * always play out the same way.
+     * @param width the width of the playing area in px
+     * @param height the height of the playing area in px
+     * @param seed the seed for the random number generator
+     */
+    public void startGame(int width, int height, long seed) {
+        this.seed = seed;
+        random.setSeed(seed);
         this.width = width;
         this.height = height;
         snake = new Snake(new PointF(width / 2f, height / 2f), dpToPxFactor, startingLength);
+        occupancy = new OccupancyGrid(width, height, Snake.BODY_PIECE_SIZE_DP * dpToPxFactor,
+                (Snake.BODY_PIECE_SIZE_DP + 2*FOOD_SIZE_DP) * dpToPxFactor, FOOD_SIZE_DP * dpToPxFactor);
+        snake.setBodyListener(occupancy);
         speed = initialSpeed;
+        stepsLastUpdate = 0;
         score = 0;
-        walls.clear();
+        walls = new WallStore((Snake.BODY_PIECE_SIZE_DP + WALL_SIZE_DP) * dpToPxFactor, WALL_GRID_BUCKETS);
         moveFood();
+        version++;
         gameOver = false;
     }
 
+    /**
+     * Gets a number that changes every time the food moves, a wall is added
+     * or removed, the score changes, or a new game starts. Everything other
+     * than the snake can be cached until this changes.
+     * @return the version of the food, walls, and score
+     */
+    public int getVersion() { return version; }
+
+    /**
+     * @return the seed the current game was started with
+     */
+    public long getSeed() { return seed; }
+
+    /**
+     * @return the width of the playing area in px
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return the height of the playing area in px
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return the factor for converting dp measurements to px
+     */
+    @Override
+    public float getDpToPxFactor() { return dpToPxFactor; }
+
+    /**
+     * Computes a hash of the entire state of the game: the snake, the food,
+     * the walls, the speed, the direction, and the score. Two games with the
+     * same hash are (almost certainly) in exactly the same state. This is used
+     * to check that a replay reproduces the original game.
+     * @return the hash of the state of the game
+     */
+    public int stateHash() {
+        int hash = Boolean.hashCode(gameOver);
+        hash = 31 * hash + score;
+        hash = 31 * hash + Double.hashCode(speed);
+        hash = 31 * hash + Double.hashCode(direction);
+        hash = 31 * hash + Float.floatToIntBits(food.x);
+        hash = 31 * hash + Float.floatToIntBits(food.y);
+        hash = 31 * hash + snake.getLength();
+        for (int i = 0, n = snake.getBodySize(); i < n; i++) {
+            hash = 31 * hash + Float.floatToIntBits(snake.getBodyX(i));
+            hash = 31 * hash + Float.floatToIntBits(snake.getBodyY(i));
+        }
+        for (int i = 0, n = walls.size(); i < n; i++) {
+            hash = 31 * hash + Float.floatToIntBits(walls.getX(i));
+            hash = 31 * hash + Float.floatToIntBits(walls.getY(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Writes everything about the game to a snapshot, see GameSnapshot.
+     * @param out the snapshot to write to
+     */
+    void writeSnapshot(GameSnapshot.Writer out) {
+        out.writeLong(seed);
+        out.writeLong(random.getState());
+        out.writeVarInt(width);
+        out.writeVarInt(height);
+        out.writeFloat(dpToPxFactor);
+        out.writeBoolean(gameOver);
+        out.writeDouble(direction);
+        out.writeFloat(food.x);
+        out.writeFloat(food.y);
+        out.writeVarInt(score);
+        out.writeVarInt(stepsLastUpdate);
+        out.writeDouble(initialSpeed);
+        out.writeDouble(speedIncreasePerFood);
+        out.writeDouble(speed);
+        out.writeVarInt(startingLength);
+        out.writeVarInt(lengthIncreasePerFood);
+        out.writeDouble(wallPlacementProbability);
+        int wallCount = walls.size();
+        float[] xs = new float[wallCount], ys = new float[wallCount];
+        for (int i = 0; i < wallCount; i++) {
+            xs[i] = walls.getX(i);
+            ys[i] = walls.getY(i);
+        }
+        out.writeVarInt(wallCount);
+        out.writeFloats(xs, wallCount);
+        out.writeFloats(ys, wallCount);
+        snake.writeSnapshot(out);
+    }
+
+    /**
+     * Replaces everything about the game with a snapshot, see GameSnapshot.
+     * The whole snapshot is read and checked before anything is replaced, so
+     * if it is not valid the game is left as it was.
+     * @param in the snapshot to read from
+     * @throws IOException if the snapshot is not valid
+     */
+    void readSnapshot(GameSnapshot.Reader in) throws IOException {
+        long newSeed = in.readLong();
+        long randomState = in.readLong();
+        int newWidth = in.readVarInt();
+        int newHeight = in.readVarInt();
+        float newDpToPxFactor = in.readFloat();
+        if (newWidth <= 0 || newWidth > MAX_SNAPSHOT_WORLD_PX || newHeight <= 0 || newHeight > MAX_SNAPSHOT_WORLD_PX) {
+            throw new IOException("world size is out of range");
+        }
+        if (!(newDpToPxFactor >= MIN_SNAPSHOT_DP_TO_PX && newDpToPxFactor <= MAX_SNAPSHOT_DP_TO_PX)) {
+            throw new IOException("dp to px factor is out of range");
+        }
+        boolean newGameOver = in.readBoolean();
+        double newDirection = in.readDouble();
+        float foodX = in.readFloat();
+        float foodY = in.readFloat();
+        int newScore = in.readVarInt();
+        int newStepsLastUpdate = in.readVarInt();
+        double newInitialSpeed = in.readDouble();
+        double newSpeedIncreasePerFood = in.readDouble();
+        double newSpeed = in.readDouble();
+        int newStartingLength = in.readVarInt();
+        int newLengthIncreasePerFood = in.readVarInt();
+        double newWallPlacementProbability = in.readDouble();
+        int wallCount = in.readCount(2); // the x and y of each wall take at least a byte each
+        float[] xs = new float[wallCount], ys = new float[wallCount];
+        in.readFloats(xs, wallCount);
+        in.readFloats(ys, wallCount);
+        Snake newSnake = new Snake(in);
+
+        // Everything was read, so now replace the game
+        seed = newSeed;
+        random.setState(randomState);
+        width = newWidth;
+        height = newHeight;
+        dpToPxFactor = newDpToPxFactor;
+        gameOver = newGameOver;
+        direction = newDirection;
+        food.x = foodX;
+        food.y = foodY;
+        score = newScore;
+        stepsLastUpdate = newStepsLastUpdate;
+        initialSpeed = newInitialSpeed;
+        speedIncreasePerFood = newSpeedIncreasePerFood;
+        speed = newSpeed;
+        startingLength = newStartingLength;
+        lengthIncreasePerFood = newLengthIncreasePerFood;
+        wallPlacementProbability = newWallPlacementProbability;
+        walls = new WallStore((Snake.BODY_PIECE_SIZE_DP + WALL_SIZE_DP) * dpToPxFactor, WALL_GRID_BUCKETS);
+        for (int i = 0; i < wallCount; i++) { walls.add(xs[i], ys[i]); }
+        snake = newSnake;
+        occupancy = new OccupancyGrid(width, height, Snake.BODY_PIECE_SIZE_DP * dpToPxFactor,
+                (Snake.BODY_PIECE_SIZE_DP + 2*FOOD_SIZE_DP) * dpToPxFactor, FOOD_SIZE_DP * dpToPxFactor);
+        snake.setBodyListener(occupancy);
+        version++;
+    }
+
     /**
      * Get the status of the game. The game is over if no game has ever been
      * started or if the snake has died and a new game has not yet started.
@@ -117,6 +362,37 @@ public class SnakeGame {
      */
     public boolean isGameOver() { return gameOver; }
 
+    /**
+     * Sets the initial speed, the probability of wall placements, the speed
+     * increase per food, and the length increase per food for one of the
+     * difficulty presets.
+     * @param difficulty the difficulty, from 0 (beginner) to 4 (insane)
+     */
+    public void setDifficulty(int difficulty) {
+        if (difficulty == 0) {
+            setInitialSpeed(0.5);
+            setWallPlacementProbability(0);
+            setSpeedIncreasePerFood(0.01);
+        } else if (difficulty == 1) {
+            setInitialSpeed(0.75);
+            setWallPlacementProbability(0.0025);
+            setSpeedIncreasePerFood(0.02);
+        } else if (difficulty == 2) {
+            setInitialSpeed(1);
+            setWallPlacementProbability(0.0025);
+            setSpeedIncreasePerFood(0.04);
+        } else if (difficulty == 3) {
+            setInitialSpeed(1.75);
+            setWallPlacementProbability(0.005);
+            setSpeedIncreasePerFood(0.05);
+        } else {
+            setInitialSpeed(2);
+            setWallPlacementProbability(0.0075);
+            setSpeedIncreasePerFood(0.06);
+        }
+        setLengthIncreasePerFood(10);
+    }
+
     /**
      * @return the current amount the snake length is increased per food
      */
@@ -143,12 +419,12 @@ public class SnakeGame {
     public int getCurrentLength() { return snake.getLength();  }
 
     /**
-     * @return the initial speed of the snake in dp/frame
+     * @return the initial speed of the snake in dp/tick
      */
     public double getInitialSpeed() { return initialSpeed; }
 
     /**
-     * @param speed the new initial speed of the snake in dp/frame
+     * @param speed the new initial speed of the snake in dp/tick
      */
     public void setInitialSpeed(double speed) { this.initialSpeed = speed; }
 
@@ -163,17 +439,17 @@ public class SnakeGame {
     public void setSpeedIncreasePerFood(double speedIncreasePerFood) { this.speedIncreasePerFood = speedIncreasePerFood; }
 
     /**
-     * @return the current speed of the snake in dp/frame
+     * @return the current speed of the snake in dp/tick
      */
     public double getCurrentSpeed() { return speed; }
 
     /**
-     * @return the current wall placement probability (per frame)
+     * @return the current wall placement probability (per tick)
      */
     public double getWallPlacementProbability() { return wallPlacementProbability; }
 
     /**
-     * @param prob the new wall placement probability (per frame)
+     * @param prob the new wall placement probability (per tick)
      */
     public void setWallPlacementProbability(double prob) { wallPlacementProbability = prob; }
 
@@ -192,30 +468,41 @@ public class SnakeGame {
     public void setMovementDirection(double angle) { direction = angle; }
 
     /**
-     * Update the game. This moves the snake, checks if the game is over (snake
-     * hits itself, goes out of bounds, or hits a wall), checks if the snake
-     * got the food, and possibly adds a new random wall piece.
+     * Update the game by a single tick. This moves the snake, checks if the
+     * game is over (snake hits itself, goes out of bounds, or hits a wall),
+     * checks if the snake got the food, and possibly adds a new random wall
+     * piece. This should be called at a fixed rate (see SimulationClock) so
+     * the game runs at the same speed no matter the frame rate.
      * @return true if the game is still going, false if the game is over
      */
     public boolean update() {
         if (gameOver) { return false; }
 
         // Move the snake
-        snake.move(direction, speed * dpToPxFactor); // NOTE: this does not take into account the frame rate
-
-        // Check if the snake has hit itself, gone out-of-bounds, or hit any of the walls
-        if (snake.headIntersectsSelf() || snake.headIsOutOfBounds(width, height) ||
-                snake.headIntersectsAnyItem(walls, WALL_SIZE_DP * dpToPxFactor)) {
+        long start = FrameProfiler.start();
+        stepsLastUpdate = snake.move(direction, speed * dpToPxFactor);
+        FrameProfiler.end(FrameProfiler.MOVE, start);
+
+        // Check if the snake has hit itself, gone out-of-bounds, or hit any of the walls anywhere along the path the
+        // head took during the move (the head moves in a straight line so it can only be out-of-bounds at the end)
+        start = FrameProfiler.start();
+        if (snake.pathIntersectsSelf() || snake.headIsOutOfBounds(width, height) ||
+                snake.pathIntersectsAnyItem(walls, WALL_SIZE_DP * dpToPxFactor)) {
+            FrameProfiler.end(FrameProfiler.COLLISIONS, start);
             gameOver = true;
+            if (listener != null) { listener.onGameOver(); }
             return false;
         }
 
         // Check if the snake has "eaten" the food
-        if (snake.headIntersectsItem(food, FOOD_SIZE_DP * dpToPxFactor)) {
+        boolean ate = snake.pathIntersectsItem(food, FOOD_SIZE_DP * dpToPxFactor);
+        FrameProfiler.end(FrameProfiler.COLLISIONS, start);
+        if (ate) {
             snake.increaseLength(lengthIncreasePerFood);
             speed += speedIncreasePerFood;
             moveFood();
             score++;
+            if (listener != null) { listener.onFoodEaten(); }
         }
 
         // Every so often add a new wall
@@ -224,59 +511,256 @@ public class SnakeGame {
         return true;
     }
 
+    /**
+     * Checks if the snake's head would end the game at a point: the point is
+     * out of bounds or touching a wall or the snake's body. This is meant for
+     * computer players looking ahead, so the body near the head counts too.
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @param index the index of the snake, always 0 since there is only one
+     * @return true if the head would end the game at the point
+     */
+    @Override
+    public boolean isBlocked(float x, float y, int index) {
+        return x < 0 || y < 0 || x >= width || y >= height ||
+                walls.anyWithinRange(x, y, (Snake.BODY_PIECE_SIZE_DP + WALL_SIZE_DP) * dpToPxFactor) ||
+                snake.bodyIntersectsItem(x, y, 0);
+    }
+
+    /**
+     * @param index the index of the snake, always 0 since there is only one
+     * @return the x coordinate of the snake's head, in px
+     */
+    @Override
+    public float getHeadX(int index) { return snake.getBodyX(0); }
+
+    /**
+     * @param index the index of the snake, always 0 since there is only one
+     * @return the y coordinate of the snake's head, in px
+     */
+    @Override
+    public float getHeadY(int index) { return snake.getBodyY(0); }
+
+    /**
+     * @param index the index of the snake, always 0 since there is only one
+     * @return the direction the snake is moving, in radians
+     */
+    @Override
+    public double getDirection(int index) { return direction; }
+
+    /**
+     * @return the number of foods, always 1
+     */
+    @Override
+    public int getFoodCount() { return 1; }
+
+    /**
+     * @param i the index of the food, always 0 since there is only one
+     * @return the x coordinate of the food, in px
+     */
+    @Override
+    public float getFoodX(int i) { return food.x; }
+
+    /**
+     * @param i the index of the food, always 0 since there is only one
+     * @return the y coordinate of the food, in px
+     */
+    @Override
+    public float getFoodY(int i) { return food.y; }
+
+    /**
+     * Gets the number of steps the snake took during the last update. These
+     * are the newest body pieces (starting at the head), all on the straight
+     * line from the previous head to the current one.
+     * @return the number of steps taken during the last update
+     */
+    public int getStepsLastUpdate() { return stepsLastUpdate; }
+
+    /**
+     * @return the x coordinate of the snake's head before the last update, in px
+     */
+    public float getPreviousHeadX() { return snake.getPathStartX(); }
+
+    /**
+     * @return the y coordinate of the snake's head before the last update, in px
+     */
+    public float getPreviousHeadY() { return snake.getPathStartY(); }
+
     /**
      * "Touch" the game at a particular point. If the snake is touched
-     * anywhere, the game is over. If the food is touched, it moves. If a wall
-     * is touched, it is removed.
+     * anywhere, nothing else happens. If the food is touched, it moves. If a
+     * wall is touched, it is removed.
      * @param pt the touched point
-     * @return true if the game is still going, false if the game is now over
+     * @return true if the touch was used, false if the game is over or the snake was touched
+     */
+    public boolean touched(PointF pt) { return touched(pt.x, pt.y); }
+
+    /**
+     * "Touch" the game at a particular point. Same as touched(PointF) but
+     * takes the raw coordinates so it never needs a PointF.
+     * @param x the x coordinate of the touched point, in px
+     * @param y the y coordinate of the touched point, in px
+     * @return true if the touch was used, false if the game is over or the snake was touched
      */
-    public boolean touched(PointF pt) {
+    public boolean touched(float x, float y) {
         if (gameOver) { return false; }
 
-        // Game over if the snake is touched
-        if (snake.bodyIntersectsItem(pt, TOUCH_SIZE_DP)) {
-            if (gameOver) { gameOver = true; }
-            return false;
-        }
+        // Touches on the snake are ignored
+        if (snake.bodyIntersectsItem(x, y, TOUCH_SIZE_DP)) { return false; }
 
         // Move the food if touched
-        if (withinRange(pt, food, (FOOD_SIZE_DP + TOUCH_SIZE_DP) * dpToPxFactor)) {
+        if (withinRange(x, y, food.x, food.y, (FOOD_SIZE_DP + TOUCH_SIZE_DP) * dpToPxFactor)) {
             moveFood();
         }
 
         // Remove all walls within range of the touched point
         final double dist = (WALL_SIZE_DP + TOUCH_SIZE_DP) * dpToPxFactor;
-        walls.removeIf(wall -> withinRange(wall, pt, dist));
+        int found = walls.queryWithinRange(x, y, dist);
+        int[] handles = walls.getResults();
+        for (int i = 0; i < found; i++) { walls.remove(handles[i]); }
+        if (found > 0) {
+            version++;
+            if (listener != null) { listener.onWallsCleared(found); }
+        }
 
         return true;
     }
 
-    /** Move the food to a new random location. */
-    private void moveFood() { food = randomPoint(FOOD_SIZE_DP * dpToPxFactor); }
+    /**
+     * "Touch" the game at every point of a batch at once, usually all of the
+     * points touched since the last tick. Points on the snake are ignored,
+     * as in touched(float, float). The food moves (once) if any point touches
+     * it, and every wall touched by any point is removed, with a single
+     * version change and listener call for all of them.
+     *
+     * The walls are found with a single query of the box around all of the
+     * points (grown by the touch range), and then each wall found is checked
+     * against the points, so a long swipe costs one query instead of one per
+     * point.
+     * @param touches the touched points
+     * @return true if the touches were used, false if the game is over or any point touched the snake
+     */
+    public boolean touched(TouchBatch touches) {
+        if (gameOver) { return false; }
+
+        boolean snakeTouched = false, foodTouched = false;
+        final double foodDist = (FOOD_SIZE_DP + TOUCH_SIZE_DP) * dpToPxFactor;
+        final double wallDist = (WALL_SIZE_DP + TOUCH_SIZE_DP) * dpToPxFactor;
+        final int n = touches.size();
+        if (touchOnSnake.length < n) { touchOnSnake = new boolean[n]; }
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            float x = touches.getX(i), y = touches.getY(i);
+            touchOnSnake[i] = snake.bodyIntersectsItem(x, y, TOUCH_SIZE_DP);
+            if (touchOnSnake[i]) {
+                snakeTouched = true;
+                continue;
+            }
+            foodTouched = foodTouched || withinRange(x, y, food.x, food.y, foodDist);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
 
-    /** Add a new random wall to the game. */
-    private void addWall() { walls.add(randomPoint(WALL_SIZE_DP * dpToPxFactor)); }
+        // One query for the walls near any point, then remove the ones within range of a point not on the snake
+        int cleared = 0;
+        if (minX <= maxX && walls.size() > 0) {
+            final double wallDistSq = wallDist * wallDist;
+            int found = walls.queryWithinRect((float) (minX - wallDist), (float) (minY - wallDist),
+                    (float) (maxX + wallDist), (float) (maxY + wallDist));
+            int[] handles = walls.getResults();
+            for (int j = 0; j < found; j++) {
+                int index = walls.getIndex(handles[j]);
+                float wallX = walls.getX(index), wallY = walls.getY(index);
+                for (int i = 0; i < n; i++) {
+                    if (touchOnSnake[i]) { continue; }
+                    float dx = wallX - touches.getX(i), dy = wallY - touches.getY(i);
+                    if (dx*dx + dy*dy < wallDistSq) {
+                        walls.remove(handles[j]);
+                        cleared++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (foodTouched) { moveFood(); }
+        if (cleared > 0) {
+            version++;
+            if (listener != null) { listener.onWallsCleared(cleared); }
+        }
+        return !snakeTouched;
+    }
+
+    /**
+     * Move the food to a new random location. If there is no room left
+     * anywhere the food is still moved, even though it will be on the snake.
+     */
+    private void moveFood() {
+        randomPoint(FOOD_SIZE_DP * dpToPxFactor, food);
+        version++;
+    }
+
+    /** Add a new random wall to the game, unless there is no room left for one. */
+    private void addWall() {
+        if (randomPoint(WALL_SIZE_DP * dpToPxFactor, wallPoint)) {
+            walls.add(wallPoint.x, wallPoint.y);
+            version++;
+        }
+    }
 
     /**
      * Create a new random point that lies completely within the bounds of the
-     * world and is not near the snake head.
+     * world and is not near the snake. The point is picked uniformly from the
+     * free cells of the occupancy grid, so this takes the same time no matter
+     * how much of the world the snake covers. If there are no free cells a
+     * few fully random points are tried instead.
      * @param size the size of the item, in px
+     * @param pt the point to set to the random location, which is set even if
+     *           there is no room (to the last point tried)
+     * @return true if the point is clear of the snake, false if no room was found
      */
-    private PointF randomPoint(float size) {
-        while (true) {
-            PointF pt = new PointF(
-                    random.nextFloat() * (width - 2*size) + size,
-                    random.nextFloat() * (height - 2*size) + size
-            );
-            if (!snake.bodyIntersectsItem(pt, 2*size)) { return pt; }
-         }
+    private boolean randomPoint(float size, PointF pt) {
+        long start = FrameProfiler.start();
+        boolean found = false;
+        int cell = occupancy.randomFreeCell(random);
+        if (cell >= 0) {
+            // Pick a point in the part of the cell that is within the bounds
+            float cellSize = occupancy.getCellSize();
+            float left = Math.max(occupancy.getCellLeft(cell), size);
+            float right = Math.min(occupancy.getCellLeft(cell) + cellSize, width - size);
+            float top = Math.max(occupancy.getCellTop(cell), size);
+            float bottom = Math.min(occupancy.getCellTop(cell) + cellSize, height - size);
+            pt.set(left + random.nextFloat() * (right - left), top + random.nextFloat() * (bottom - top));
+            found = true;
+        } else {
+            for (int i = 0; i < FALLBACK_ATTEMPTS && !found; i++) {
+                pt.set(random.nextFloat() * (width - 2*size) + size, random.nextFloat() * (height - 2*size) + size);
+                found = !snake.bodyIntersectsItem(pt.x, pt.y, 2*size);
+            }
+        }
+        FrameProfiler.end(FrameProfiler.PLACEMENT, start);
+        return found;
     }
 
     /**
-     * @return list of all of the current snake body pieces
+     * @return the number of current snake body pieces
      */
-    public List<PointF> getSnakeBodyLocations() { return snake.getBody(); }
+    public int getSnakeBodySize() { return snake.getBodySize(); }
+
+    /**
+     * @param i the index of the snake body piece, 0 is the head
+     * @return the x coordinate of the snake body piece, in px
+     */
+    public float getSnakeBodyX(int i) { return snake.getBodyX(i); }
+
+    /**
+     * @param i the index of the snake body piece, 0 is the head
+     * @return the y coordinate of the snake body piece, in px
+     */
+    public float getSnakeBodyY(int i) { return snake.getBodyY(i); }
 
     /**
      * @return the current location of the food
@@ -284,7 +768,65 @@ public class SnakeGame {
     public PointF getFoodLocation() { return food; }
 
     /**
-     * @return list of all of the current wall location
+     * @return the number of current walls
+     */
+    public int getWallCount() { return walls.size(); }
+
+    /**
+     * @param i the index of the wall, from 0 to getWallCount() - 1; the order
+     *          of the walls only changes when a wall is removed
+     * @return the x coordinate of the wall, in px
+     */
+    public float getWallX(int i) { return walls.getX(i); }
+
+    /**
+     * @param i the index of the wall, from 0 to getWallCount() - 1
+     * @return the y coordinate of the wall, in px
+     */
+    public float getWallY(int i) { return walls.getY(i); }
+
+    /**
+     * Copies the snake's body points into arrays, from the tail to the head.
+     * @param xs the array to copy the x coordinates into, at least getSnakeBodySize() long
+     * @param ys the array to copy the y coordinates into, at least getSnakeBodySize() long
+     */
+    void copySnakeBody(float[] xs, float[] ys) { snake.copyBody(xs, ys); }
+
+    /**
+     * Copies the wall locations into arrays, in the order of getWallX().
+     * @param xs the array to copy the x coordinates into, at least getWallCount() long
+     * @param ys the array to copy the y coordinates into, at least getWallCount() long
+     */
+    void copyWalls(float[] xs, float[] ys) { walls.copyTo(xs, ys); }
+
+    /**
+     * A Random that gives exactly the same numbers as java.util.Random but
+     * whose state can be read and set, so it can be saved in a snapshot.
      */
-    public List<PointF> getWallLocations() { return Collections.unmodifiableList(walls); }
+    private static final class SavableRandom extends Random {
+        private static final long serialVersionUID = 1L;
+        private final static long MULTIPLIER = 0x5DEECE66DL, ADDEND = 0xBL, MASK = (1L << 48) - 1;
+
+        /** The 48-bit state, the same as java.util.Random's */
+        private long state;
+
+        @Override
+        public synchronized void setSeed(long seed) {
+            super.setSeed(seed); // clears the saved nextGaussian()
+            state = (seed ^ MULTIPLIER) & MASK;
+        }
+
+        @Override
+        protected int next(int bits) {
+            state = (state * MULTIPLIER + ADDEND) & MASK;
+            return (int) (state >>> (48 - bits));
+        }
+
+        long getState() { return state; }
+
+        void setState(long state) {
+            super.setSeed(0); // clears the saved nextGaussian()
+            this.state = state & MASK;
+        }
+    }
 }
@@ -1,11 +1,7 @@
 package edu.moravian.csci299.gravitysnake;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.PointF;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
@@ -16,8 +12,6 @@ import android.view.View;
 
 import androidx.annotation.Nullable;
 
-import java.util.List;
-
 /**
  * The custom View for the Snake Game. This handles the user interaction and
  * sensor information for the snake game but has none of the game logic. That
@@ -29,15 +23,8 @@ import java.util.List;
  * a few methods to this class.
  */
 public class SnakeGameView extends View implements SensorEventListener {
-    /** The paints and drawables used for the different parts of the game */
-    // TODO: you will need to add many of these (this one is provided as an example for text paint)
-    private final Paint scorePaint = new Paint();
-    private final Paint foodPaint = new Paint();
-    private final Paint snakePaint = new Paint();
-    private final Paint headPaint = new Paint();
-    private final Paint wallPaint = new Paint();
-
-
+    /** The renderer that holds the paints and draws the game */
+    private final GameRenderer renderer;
 
     /** The metrics about the display to convert from dp and sp to px */
     private final DisplayMetrics displayMetrics;
@@ -45,8 +32,32 @@ public class SnakeGameView extends View implements SensorEventListener {
     /** The snake game for the logic behind this view */
     private final SnakeGame snakeGame;
 
+    /** Records all input to the game so that it can be replayed exactly later */
+    private final GameRecorder recorder;
+
+    /** Filters the gravity sensor samples and turns them into a direction once per tick */
+    private final GravityInput gravityInput = new GravityInput();
+
+    /** The clock that decides how many times to update the game each frame */
+    private final SimulationClock clock = new SimulationClock();
+
+    /** The points touched since the last tick, given to the game all at once */
+    private final TouchBatch touches = new TouchBatch();
+
+    /** Hands each new frame of the game to the renderer */
+    private final FrameExchange frames = new FrameExchange();
+
+    /** Decides when another frame is needed so nothing is drawn while nothing changes */
+    private final FrameScheduler scheduler = new FrameScheduler();
+
+    /** Steps the quality of the drawing and simulation down (or up) to keep frames within the budget */
+    private final QualityGovernor governor = new QualityGovernor();
+
     private String highScoreKey;
-    private SharedPreferences preferences;
+    private HighScores highScores;
+
+    /** The score the last time it was checked against the high score */
+    private int lastScore = 0;
     private GameActivity gameActivity;
 
 
@@ -61,24 +72,15 @@ public class SnakeGameView extends View implements SensorEventListener {
 
         // Make the game
         snakeGame = new SnakeGame();
+        recorder = new GameRecorder(snakeGame);
         this.gameActivity = (GameActivity) context;
 
         // This color is automatically painted as the background
-        // TODO: feel free to change this (and it can even be changed to any Drawable if you use setBackground() instead)
-        setBackgroundColor(0xFF333333);
-
-        // Setup all of the paints and drawables used for drawing later
-        // TODO: this one paint is a demonstration for text, solid colors usually just require setting the color
-        scorePaint.setColor(Color.WHITE);
-        scorePaint.setAntiAlias(true);
-        scorePaint.setTextAlign(Paint.Align.CENTER);
-        scorePaint.setTextSize(spToPx(24)); // use sp for text
-        scorePaint.setFakeBoldText(true);
-
-        foodPaint.setColor(Color.RED);
-        snakePaint.setColor(Color.parseColor("#21C14C"));
-        headPaint.setColor(Color.GREEN);
-        wallPaint.setColor(Color.YELLOW);
+        setBackgroundColor(GameRenderer.BACKGROUND_COLOR);
+
+        // Setup all of the paints used for drawing later
+        renderer = new GameRenderer(displayMetrics);
+        applyQuality();
     }
 
     /**
@@ -86,6 +88,53 @@ public class SnakeGameView extends View implements SensorEventListener {
      */
     public SnakeGame getSnakeGame() { return snakeGame; }
 
+    /**
+     * @return the recorder of all input to the game, used to save the game for replaying later
+     */
+    public GameRecorder getRecorder() { return recorder; }
+
+    /**
+     * @return the input stage for the gravity sensor, which also has the rate to register the sensor at
+     */
+    public GravityInput getGravityInput() { return gravityInput; }
+
+    /**
+     * @return the scheduler for the frames, which also counts the frames drawn per second in each of its states
+     */
+    public FrameScheduler getFrameScheduler() { return scheduler; }
+
+    /**
+     * @return the governor of the quality level, which also has the log of the changes it made
+     */
+    public QualityGovernor getQualityGovernor() { return governor; }
+
+    /**
+     * Gives the settings of the governor's current quality level to the renderer and the clock.
+     */
+    private void applyQuality() {
+        renderer.applyQuality(governor);
+        clock.setMaxCatchUpTicks(governor.getMaxCatchUpTicks());
+    }
+
+    /**
+     * Called when the activity is paused: the game stops being updated and no more frames are drawn.
+     */
+    public void pause() { scheduler.pause(System.nanoTime()); }
+
+    /**
+     * Called when the activity is resumed: the clock starts over (so the time spent paused is not simulated) and frames
+     * are drawn again.
+     */
+    public void resume() {
+        clock.reset();
+        if (scheduler.resume(System.nanoTime())) { postInvalidateOnAnimation(); }
+    }
+
+    /**
+     * @param debugOverlay true to show the frame timing of each phase from the FrameProfiler over the game
+     */
+    public void setDebugOverlay(boolean debugOverlay) { renderer.setDebugOverlay(debugOverlay); }
+
     /**
      * Utility function to convert dp units to px units. All Canvas and Paint
      * function use numbers in px units but dp units are better for
@@ -104,118 +153,79 @@ public class SnakeGameView extends View implements SensorEventListener {
      */
     public float spToPx(float sp) { return sp * displayMetrics.scaledDensity; }
 
-    /** Scales the initial speed, the probability of wall placements, and the length increase per food by calling approaptiate
-     * setters in SnakeGame class.
+    /** Scales the initial speed, the probability of wall placements, and the length increase per food by calling
+     * setDifficulty() in SnakeGame class.
      * @param difficulty the new difficulty for the game
      */
-    public void setDifficulty(int difficulty) {
-        // TODO: may need to set lots of things here to change the game's difficulty
-        if(difficulty == 0) {
-            snakeGame.setInitialSpeed(0.5);
-            snakeGame.setWallPlacementProbability(0);
-            snakeGame.setSpeedIncreasePerFood(0.01);
-        }
-        else if (difficulty == 1) {
-            snakeGame.setInitialSpeed(0.75);
-            snakeGame.setWallPlacementProbability(0.0025);
-            snakeGame.setSpeedIncreasePerFood(0.02);
-        }
-        else if (difficulty == 2) {
-            snakeGame.setInitialSpeed(1);
-            snakeGame.setWallPlacementProbability(0.0025);
-            snakeGame.setSpeedIncreasePerFood(0.04);
-        }
-        else if (difficulty == 3) {
-            snakeGame.setInitialSpeed(1.75);
-            snakeGame.setWallPlacementProbability(0.005);
-            snakeGame.setSpeedIncreasePerFood(0.05);
-        }
-        else{
-            snakeGame.setInitialSpeed(2);
-            snakeGame.setWallPlacementProbability(0.0075);
-            snakeGame.setSpeedIncreasePerFood(0.06);
-        }
-        snakeGame.setLengthIncreasePerFood(10);
-
-
-        }
+    public void setDifficulty(int difficulty) { snakeGame.setDifficulty(difficulty); }
 
     /**
      * Once the view is laid out, we know the dimensions of it and can start
      * the game with the snake in the middle (if the game hasn't already
      * started). We also take this time to set the dp to px factor of the
-     * snake.
+     * snake, which must be done before the game starts so the snake uses it.
      */
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         // NOTE: this function is done for you
         super.onLayout(changed, left, top, right, bottom);
         if (snakeGame.hasNotStarted()) {
-            snakeGame.startGame(right - left, bottom - top);
             snakeGame.setDpToPxFactor(displayMetrics.density);
+            recorder.startGame(right - left, bottom - top);
         }
         invalidate();
     }
 
     /**
-     *Continuously invalidated method for continuous play back. Draws canvas, goes through and draws food object as circle,
-     * draws the score, draws the snakes body iterating through snakeLocation list, draws the walls by iterating through the wallLocations
-     * list, calls update to update() in SnakeGame the snakeGame object and finally checks to see if a new high score was reached if
-     * so then updates preferences appropriately.
+     * Invalidated every frame while the game is running for continuous play back. Unless paused, advances the
+     * simulation clock and calls update() in SnakeGame once per whole tick that has passed (first taking the latest
+     * direction from the gravity input and all of the points touched since the last tick) and publishes the new frame
+     * of the game if it changed, then asks the frame scheduler if there should be another frame (there is not once the
+     * game is over or paused), has the renderer draw the latest frame: the cached layer of the food, score and
+     * walls with the snakes body (interpolated between the last two ticks) on top and finally checks to see if a new high score was
+     * reached (only when the score changes) and writes out the high scores once the game is over. While the game is
+     * running the time the frame took is given to the quality governor, which may change the quality level.
      * @param canvas Canvas object containing what to draw
      */
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        postInvalidateOnAnimation(); // automatically invalidate every frame so we get continuous playback
-
-        // TODO: update the game and draw the view
-        PointF foodLocation = snakeGame.getFoodLocation();
-
-        canvas.drawCircle(foodLocation.x, foodLocation.y, dpToPx(SnakeGame.FOOD_SIZE_DP), foodPaint);
-        canvas.drawText(String.valueOf(snakeGame.getScore()), getWidth() >> 1,100, scorePaint);
-        drawSnake(canvas);
-        drawWalls(canvas);
-
-        snakeGame.update();
-
-        if(snakeGame.getScore() > preferences.getInt(highScoreKey, 100))
-            this.preferences.edit().putInt(highScoreKey, snakeGame.getScore()).apply();
-    }
-
+        long frameStart = FrameProfiler.start();
+
+        long now = System.nanoTime();
+        int ticks = scheduler.isPaused() ? 0 : clock.advance(now);
+        for (int i = 0; i < ticks; i++) {
+            if (gravityInput.poll()) { recorder.setMovementDirection(gravityInput.getDirection()); }
+            if (!touches.isEmpty()) {
+                recorder.touched(touches);
+                touches.clear();
+            }
+            if (!recorder.update()) { break; }
+        }
+        if (!snakeGame.hasNotStarted() && (ticks > 0 || frames.isStale(snakeGame))) { frames.publish(snakeGame); }
+        if (scheduler.onFrame(now, snakeGame.isGameOver())) { postInvalidateOnAnimation(); }
 
-    private void drawWalls(Canvas canvas) {
-        List<PointF> wallLocations = snakeGame.getWallLocations();
-        for(PointF point: wallLocations)
-            canvas.drawCircle(point.x, point.y, dpToPx(SnakeGame.WALL_SIZE_DP), wallPaint);
-    }
+        renderer.draw(canvas, frames.latest(), clock.getAlpha());
 
-    private void drawSnake(Canvas canvas) {
-        List<PointF> snakeLocation = snakeGame.getSnakeBodyLocations();
-        for(int i = snakeLocation.size() - 1; i >= 0; i--){
-            PointF point = snakeLocation.get(i);
-            if(i==0)
-                canvas.drawCircle(point.x, point.y, dpToPx(Snake.BODY_PIECE_SIZE_DP), headPaint);
-            else
-                canvas.drawCircle(point.x, point.y, dpToPx(Snake.BODY_PIECE_SIZE_DP), snakePaint);
+        if (snakeGame.getScore() != lastScore) {
+            lastScore = snakeGame.getScore();
+            highScores.offer(highScoreKey, lastScore);
         }
+        if (snakeGame.isGameOver()) { highScores.flush(); } // does nothing if there is no new high score
+        if (scheduler.getState() == FrameScheduler.RUNNING && governor.onFrame(now, System.nanoTime() - now)) { applyQuality(); }
+        FrameProfiler.end(FrameProfiler.FRAME, frameStart);
     }
 
 
     /**
-     * called from GameActivity class. Measures the angle between the gravity sensor's vector values of acceleration on x and y axeses
-     * and uses Math.atan2() method to get the angle between the two vectors then passes to SnakeGame's setMovementDirection() method.
+     * called from GameActivity class. Passes the gravity sensor's vector values of acceleration on x and y axes to the
+     * gravity input stage, which filters them. The angle is computed from the filtered values with Math.atan2() at most
+     * once per tick (in onDraw()) and then passed to SnakeGame's setMovementDirection() method.
      * @param event the SensorEvent for the sensor that had a change
      */
     @Override
     public void onSensorChanged(SensorEvent event) {
-        // TODO
-        float x = event.values[0];
-        float y = event.values[1];
-
-        double angle = Math.atan2(y, -x);
-
-        snakeGame.setMovementDirection(angle);
+        gravityInput.onSample(event.values[0], event.values[1], event.timestamp);
     }
 
     /** Does nothing but must be provided. */
@@ -223,11 +233,11 @@ public class SnakeGameView extends View implements SensorEventListener {
     public void onAccuracyChanged(Sensor sensor, int accuracy) { }
 
     /**
-     * Sets preferences class variable to the preferences needed to save information across lifecycle changes
-     * @param preferences preference to set class variable preferences to
+     * Sets highScores class variable to the store that keeps the high scores across lifecycle changes
+     * @param highScores the store of high scores
      */
-    public void setPreferences(SharedPreferences preferences) {
-        this.preferences = preferences;
+    public void setHighScores(HighScores highScores) {
+        this.highScores = highScores;
     }
 
     /**
@@ -241,23 +251,28 @@ public class SnakeGameView extends View implements SensorEventListener {
 
     /**
      * Handles touch motionEvents. If the game is over then the touch event of pressing down brings us back to the start scree.
-     * If the game is still in progress we pass the point containing the x and y values where MotionEvent occurred to touched()
-     * method in our instance of snakeGame to see if touch affected game. We then invalidate to redraw view.
-     * @param event MotionEvent that contains the PointF object containing info on x and y values touchEvent occurred at.
+     * If the game is still in progress the points of every pointer, including the historical samples since the last
+     * event, are added to the batch of touches that is given to the game (through the recorder) all at once on the next
+     * tick in onDraw(). The frame scheduler is woken in case it is not drawing frames, but while the game is running
+     * this does not cause an extra redraw.
+     * @param event MotionEvent that contains the x and y values of each pointer
      * @return True after MotionEvent is handled
      */
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        PointF point = new PointF(event.getX(), event.getY());
         if (snakeGame.isGameOver()){
-            if(event.getAction() == MotionEvent.ACTION_DOWN){
+            if(event.getActionMasked() == MotionEvent.ACTION_DOWN){
                 this.gameActivity.finish();
             }
         }
         else{
-            snakeGame.touched(point);
+            int pointers = event.getPointerCount();
+            for (int h = 0, history = event.getHistorySize(); h < history; h++) {
+                for (int p = 0; p < pointers; p++) { touches.add(event.getHistoricalX(p, h), event.getHistoricalY(p, h)); }
+            }
+            for (int p = 0; p < pointers; p++) { touches.add(event.getX(p), event.getY(p)); }
         }
-        invalidate();
+        if (scheduler.wake(System.nanoTime())) { postInvalidateOnAnimation(); }
         return true;
     }
 
@@ -0,0 +1,375 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * An alternative to SnakeGameView that runs the game on its own thread. The
+ * game thread updates the SnakeGame and draws it onto this view's surface,
+ * paced by Choreographer frame callbacks, so nothing the UI thread does can
+ * stall the game. Touch and sensor events arrive on the UI thread and are
+ * passed to the game thread without locks (touches through a
+ * GameCommandQueue, gravity samples through a GravityInput); the SnakeGame
+ * itself is only ever touched by the game thread.
+ *
+ * GameActivity uses this in place of SnakeGameView when it is started with
+ * the "SurfaceRenderer" extra set, e.g. with:
+ * adb shell am start --ez SurfaceRenderer true. It has the same setters as
+ * SnakeGameView, but it does not do everything that
+ * SnakeGameView does. Since the game belongs to the game thread there is no
+ * getSnakeGame(), so GameActivity cannot attach a SnakeGame.Listener (no
+ * sound effects) or save the game in a GameSnapshot when it is recreated (the
+ * game starts over). Games are also not recorded with a GameRecorder so they
+ * cannot be replayed, and there is no getFrameScheduler() or
+ * getQualityGovernor() for GameActivity to log.
+ */
+public class SnakeSurfaceView extends SurfaceView implements SurfaceHolder.Callback, SensorEventListener,
+        Choreographer.FrameCallback, GameCommandQueue.Consumer {
+    /** The maximum number of input commands waiting for the game thread */
+    private final static int COMMAND_QUEUE_CAPACITY = 256;
+
+    /** The renderer that holds the paints and draws the game */
+    private final GameRenderer renderer;
+
+    /** The metrics about the display to convert from dp and sp to px */
+    private final DisplayMetrics displayMetrics;
+
+    /** The snake game for the logic behind this view, only used on the game thread */
+    private final SnakeGame snakeGame;
+
+    /** The clock that decides how many times to update the game each frame */
+    private final SimulationClock clock = new SimulationClock();
+
+    /** The points touched since the last tick, given to the game all at once, only used on the game thread */
+    private final TouchBatch touches = new TouchBatch();
+
+    /** Hands each new frame of the game to the renderer */
+    private final FrameExchange frames = new FrameExchange();
+
+    /** Decides when another frame is needed so nothing is drawn while nothing changes, only used on the game thread */
+    private final FrameScheduler scheduler = new FrameScheduler();
+
+    /** Steps the quality down (or up) to keep frames within the budget, only used on the game thread */
+    private final QualityGovernor governor = new QualityGovernor();
+
+    /** Filters the gravity sensor samples and hands them to the game thread */
+    private final GravityInput gravityInput = new GravityInput();
+
+    /** The input commands sent from the UI thread to the game thread */
+    private final GameCommandQueue commands = new GameCommandQueue(COMMAND_QUEUE_CAPACITY);
+
+    /** The number of touch points dropped because the command queue was full, only used on the UI thread */
+    private int droppedCommands = 0;
+
+    /** Handler for running things back on the UI thread */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** The thread that updates and draws the game, and a handler for it */
+    private HandlerThread gameThread;
+    private Handler gameHandler;
+
+    /** If the game thread should keep drawing frames */
+    private volatile boolean running;
+
+    /** Run on the game thread after each touch so frames are drawn even if the game is not running */
+    private final Runnable wakeUp = () -> {
+        if (running && scheduler.wake(System.nanoTime())) { Choreographer.getInstance().postFrameCallback(this); }
+    };
+
+    private String highScoreKey;
+    private HighScores highScores;
+
+    /** The score the last time it was checked against the high score */
+    private int lastScore = 0;
+    private GameActivity gameActivity;
+
+    // Required constructors for making your own view that can be placed in a layout
+    public SnakeSurfaceView(Context context) { this(context, null); }
+    public SnakeSurfaceView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+
+        // Get the metrics for the display so we can later convert between dp, sp, and px
+        displayMetrics = context.getResources().getDisplayMetrics();
+
+        // Make the game
+        snakeGame = new SnakeGame();
+        this.gameActivity = (GameActivity) context;
+
+        // Setup all of the paints used for drawing later
+        renderer = new GameRenderer(displayMetrics);
+        applyQuality();
+
+        getHolder().addCallback(this);
+    }
+
+    /**
+     * Sets the difficulty of the game. This must be called before the surface
+     * is created since afterwards the game belongs to the game thread.
+     * @param difficulty the new difficulty for the game
+     */
+    public void setDifficulty(int difficulty) { snakeGame.setDifficulty(difficulty); }
+
+    /**
+     * @param debugOverlay true to show the frame timing of each phase from the FrameProfiler over the game
+     */
+    public void setDebugOverlay(boolean debugOverlay) { renderer.setDebugOverlay(debugOverlay); }
+
+    /**
+     * @return the input stage for the gravity sensor, which also has the rate to register the sensor at
+     */
+    public GravityInput getGravityInput() { return gravityInput; }
+
+    /**
+     * Must only be called from the UI thread.
+     * @return the number of touch points dropped because the game thread fell too far behind, since the view was made
+     */
+    public int getDroppedCommands() { return droppedCommands; }
+
+    /**
+     * Sets the frame time budget of the quality governor to the time between refreshes of the display. This must be
+     * called before the surface is created since afterwards the governor belongs to the game thread.
+     * @param framesPerSecond the refresh rate of the display, in Hz
+     */
+    public void setTargetFrameRate(float framesPerSecond) { governor.setTargetFrameRate(framesPerSecond); }
+
+    /**
+     * Gives the settings of the governor's current quality level to the renderer and the clock.
+     */
+    private void applyQuality() {
+        renderer.applyQuality(governor);
+        clock.setMaxCatchUpTicks(governor.getMaxCatchUpTicks());
+    }
+
+    /**
+     * Called when the activity is paused: the game thread stops updating the game and drawing frames.
+     */
+    public void pause() {
+        if (gameHandler != null) { gameHandler.post(() -> scheduler.pause(System.nanoTime())); }
+    }
+
+    /**
+     * Called when the activity is resumed: the game thread starts the clock over (so the time spent paused is not
+     * simulated) and draws frames again.
+     */
+    public void resume() {
+        if (gameHandler != null) { gameHandler.post(this::resumeFrames); }
+    }
+
+    /**
+     * Starts the clock over and makes sure frames are being drawn, on the game thread.
+     */
+    private void resumeFrames() {
+        clock.reset();
+        if (scheduler.resume(System.nanoTime())) { Choreographer.getInstance().postFrameCallback(this); }
+    }
+
+    /**
+     * When the surface is created the game thread is started and begins
+     * drawing a frame every time the display refreshes (while the game is
+     * running).
+     * @param holder the holder of the surface
+     */
+    @Override
+    public void surfaceCreated(@NonNull SurfaceHolder holder) {
+        gameThread = new HandlerThread("SnakeGameThread");
+        gameThread.start();
+        gameHandler = new Handler(gameThread.getLooper());
+        running = true;
+        gameHandler.post(this::resumeFrames); // posts to the game thread's Choreographer
+    }
+
+    /**
+     * Once the surface has a size we know the dimensions of the game and can
+     * start it (if the game hasn't already started) on the game thread.
+     * @param holder the holder of the surface
+     * @param format the pixel format of the surface
+     * @param width the width of the surface in px
+     * @param height the height of the surface in px
+     */
+    @Override
+    public void surfaceChanged(@NonNull SurfaceHolder holder, int format, int width, int height) {
+        gameHandler.post(() -> {
+            if (snakeGame.hasNotStarted()) {
+                snakeGame.setDpToPxFactor(displayMetrics.density);
+                snakeGame.startGame(width, height);
+            }
+        });
+    }
+
+    /**
+     * When the surface is destroyed the game thread is stopped. This waits for
+     * the thread to finish so that nothing draws on the surface after this
+     * returns.
+     * @param holder the holder of the surface
+     */
+    @Override
+    public void surfaceDestroyed(@NonNull SurfaceHolder holder) {
+        running = false;
+        gameHandler.post(() -> {
+            Choreographer.getInstance().removeFrameCallback(this);
+            scheduler.cancelFrame();
+        });
+        gameThread.quitSafely();
+        try {
+            gameThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        gameThread = null;
+        gameHandler = null;
+    }
+
+    /**
+     * Called on the game thread once per display frame. Handles all of the
+     * input that has arrived, updates the game once per whole tick that has
+     * passed (unless paused), publishes the new frame of the game and draws it onto the surface, checks for a new
+     * high score (only when the score changes), writes out the high scores once
+     * the game is over and asks for the next frame if the frame scheduler says
+     * there should be one. While the game is running the time spent on the
+     * frame is given to the quality governor, which may change the quality
+     * level.
+     * @param frameTimeNanos the time the frame started, in ns
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) { return; }
+        if (snakeGame.hasNotStarted()) { // wait for surfaceChanged() to start the game
+            Choreographer.getInstance().postFrameCallback(this);
+            return;
+        }
+        long frameStart = FrameProfiler.start();
+        long workStart = System.nanoTime();
+
+        commands.drain(this);
+        int ticks = scheduler.isPaused() ? 0 : clock.advance(frameTimeNanos);
+        for (int i = 0; i < ticks; i++) {
+            if (gravityInput.poll()) { snakeGame.setMovementDirection(gravityInput.getDirection()); }
+            if (!touches.isEmpty()) {
+                snakeGame.touched(touches);
+                touches.clear();
+            }
+            if (!snakeGame.update()) { break; }
+        }
+        if (ticks > 0 || frames.isStale(snakeGame)) { frames.publish(snakeGame); }
+        if (scheduler.onFrame(frameTimeNanos, snakeGame.isGameOver())) { Choreographer.getInstance().postFrameCallback(this); }
+
+        // The time waiting for a buffer in lockCanvas() and unlockCanvasAndPost() is not work so it is left out
+        long work = System.nanoTime() - workStart;
+        Canvas canvas = getHolder().lockCanvas();
+        if (canvas != null) {
+            try {
+                long drawStart = System.nanoTime();
+                renderer.drawBackground(canvas);
+                renderer.draw(canvas, frames.latest(), clock.getAlpha());
+                work += System.nanoTime() - drawStart;
+            } finally {
+                getHolder().unlockCanvasAndPost(canvas);
+            }
+        }
+
+        if (snakeGame.getScore() != lastScore) {
+            lastScore = snakeGame.getScore();
+            highScores.offer(highScoreKey, lastScore);
+        }
+        if (snakeGame.isGameOver()) { highScores.flush(); } // does nothing if there is no new high score
+        if (scheduler.getState() == FrameScheduler.RUNNING && governor.onFrame(frameTimeNanos, work)) { applyQuality(); }
+        FrameProfiler.end(FrameProfiler.FRAME, frameStart);
+    }
+
+    /**
+     * Called on the game thread for each input command from the UI thread.
+     * Touches are added to the batch given to the game all at once on the
+     * next tick, unless the game is over in which case pressing down brings
+     * us back to the start screen.
+     * @param type the type of the command, either TOUCH or TOUCH_DOWN
+     * @param x the x of the touch, in px
+     * @param y the y of the touch, in px
+     */
+    @Override
+    public void onCommand(int type, float x, float y) {
+        if (snakeGame.isGameOver()) {
+            if (type == GameCommandQueue.TOUCH_DOWN) { mainHandler.post(gameActivity::finish); }
+        } else {
+            touches.add(x, y);
+        }
+    }
+
+    /**
+     * Passes the gravity sensor's vector values of acceleration on x and y axes to the gravity input stage, which
+     * filters them and hands the latest to the game thread without locks. The game thread turns them into a direction
+     * once per tick.
+     * @param event the SensorEvent for the sensor that had a change
+     */
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        gravityInput.onSample(event.values[0], event.values[1], event.timestamp);
+    }
+
+    /** Does nothing but must be provided. */
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) { }
+
+    /**
+     * Sends the points of every pointer (including the historical samples
+     * since the last event) to the game thread and wakes it up in case it is
+     * not drawing frames. Presses are marked so that the game thread can go
+     * back to the start screen if the game is over. If the game thread has
+     * fallen so far behind that the command queue is full, the points that do
+     * not fit are dropped and counted by getDroppedCommands(); the game thread
+     * is still woken so it drains the queue on its next frame and later
+     * touches get through.
+     * @param event MotionEvent that contains the x and y values of each pointer
+     * @return True after MotionEvent is handled
+     */
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        int pointers = event.getPointerCount();
+        for (int h = 0, history = event.getHistorySize(); h < history; h++) {
+            for (int p = 0; p < pointers; p++) {
+                if (!commands.offer(GameCommandQueue.TOUCH, event.getHistoricalX(p, h), event.getHistoricalY(p, h))) {
+                    droppedCommands++;
+                }
+            }
+        }
+        int type = event.getActionMasked() == MotionEvent.ACTION_DOWN ? GameCommandQueue.TOUCH_DOWN : GameCommandQueue.TOUCH;
+        for (int p = 0; p < pointers; p++) {
+            if (!commands.offer(type, event.getX(p), event.getY(p))) { droppedCommands++; }
+        }
+        if (gameHandler != null) { gameHandler.post(wakeUp); }
+        return true;
+    }
+
+    /**
+     * Sets highScores class variable to the store that keeps the high scores across lifecycle changes
+     * @param highScores the store of high scores
+     */
+    public void setHighScores(HighScores highScores) { this.highScores = highScores; }
+
+    /**
+     * sets class variable highScoreKey to be used to get high score to appropriate key based on difficulty
+     * @param highScoreKey the difficulty that was selected so the appropriate high score is changed
+     */
+    public void setHighScoreKey(String highScoreKey) { this.highScoreKey = highScoreKey; }
+
+    /**
+     * sets gameActivity class variable to the instance of GameActivity that called it so that we can call finish and
+     * end its lifecycle after game is over
+     * @param gameActivity the GameActivity that is using this view
+     */
+    public void setGameActivity(GameActivity gameActivity) { this.gameActivity = gameActivity; }
+}
@@ -0,0 +1,332 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Arrays;
+
+/**
+ * A uniform spatial hash grid of points. Each point is stored along with an
+ * integer id in the bucket for the grid cell that it is in. Cells are hashed
+ * into a fixed number of buckets so the grid does not need to know the size
+ * of the world ahead of time. Range queries only look at the cells that are
+ * near the query point, so their cost does not depend on the total number of
+ * points in the grid.
+ *
+ * Points are added and removed one at a time and the grid never allocates
+ * except when a bucket is full, in which case that bucket doubles in size.
+ */
+public class SpatialGrid {
+    /** Initial number of points each bucket can hold */
+    private final static int INITIAL_BUCKET_CAPACITY = 8;
+
+    /** The width and height of each cell, in px */
+    private final float cellSize;
+
+    /** The mask for converting a cell hash into a bucket index */
+    private final int bucketMask;
+
+    /** The ids and coordinates of the points in each bucket */
+    private final int[][] ids;
+    private final float[][] xs, ys;
+
+    /** The number of points in each bucket */
+    private final int[] counts;
+
+    /** The query that last visited each bucket, used to not visit a bucket twice in one query */
+    private final int[] visited;
+
+    /** The number of the current query */
+    private int query = 0;
+
+    /** The total number of points in the grid */
+    private int size = 0;
+
+    /** The ids found by the last call to queryWithinRange() */
+    private int[] results = new int[INITIAL_BUCKET_CAPACITY];
+
+    /**
+     * Create an empty grid.
+     * @param cellSize the width and height of each cell, in px, usually about
+     *                 the size of the ranges that will be queried
+     * @param buckets the number of buckets to hash the cells into, must be a
+     *                power of 2
+     */
+    public SpatialGrid(float cellSize, int buckets) {
+        if (buckets <= 0 || (buckets & (buckets - 1)) != 0) {
+            throw new IllegalArgumentException("buckets must be a power of 2");
+        }
+        this.cellSize = cellSize;
+        this.bucketMask = buckets - 1;
+        ids = new int[buckets][];
+        xs = new float[buckets][];
+        ys = new float[buckets][];
+        counts = new int[buckets];
+        visited = new int[buckets];
+    }
+
+    /**
+     * @return the number of points in the grid
+     */
+    public int size() { return size; }
+
+    /**
+     * @return the width and height of each cell, in px
+     */
+    public float getCellSize() { return cellSize; }
+
+    /**
+     * Add a point to the grid.
+     * @param id the id of the point
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     */
+    public void insert(int id, float x, float y) {
+        int bucket = bucket(cell(x), cell(y));
+        int count = counts[bucket];
+        if (ids[bucket] == null) {
+            ids[bucket] = new int[INITIAL_BUCKET_CAPACITY];
+            xs[bucket] = new float[INITIAL_BUCKET_CAPACITY];
+            ys[bucket] = new float[INITIAL_BUCKET_CAPACITY];
+        } else if (count == ids[bucket].length) {
+            ids[bucket] = Arrays.copyOf(ids[bucket], count * 2);
+            xs[bucket] = Arrays.copyOf(xs[bucket], count * 2);
+            ys[bucket] = Arrays.copyOf(ys[bucket], count * 2);
+        }
+        ids[bucket][count] = id;
+        xs[bucket][count] = x;
+        ys[bucket][count] = y;
+        counts[bucket] = count + 1;
+        size++;
+    }
+
+    /**
+     * Remove a point from the grid. The coordinates must be the same as the
+     * ones that the point was added with.
+     * @param id the id of the point
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @return true if the point was found and removed
+     */
+    public boolean remove(int id, float x, float y) {
+        int bucket = bucket(cell(x), cell(y));
+        int[] bucketIds = ids[bucket];
+        int last = counts[bucket] - 1;
+        for (int i = last; i >= 0; i--) {
+            if (bucketIds[i] == id) {
+                // Swap the last point in the bucket into this spot
+                bucketIds[i] = bucketIds[last];
+                xs[bucket][i] = xs[bucket][last];
+                ys[bucket][i] = ys[bucket][last];
+                counts[bucket] = last;
+                size--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all points from the grid. The memory used by the buckets is kept.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    /**
+     * Checks if any point in the grid is within range of a point.
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @param range the maximum distance allowed, in px
+     * @return true if any point in the grid is closer than range to x, y
+     */
+    public boolean anyWithinRange(float x, float y, double range) {
+        return anyWithinRange(x, y, range, 0, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Checks if any point in the grid that is old enough is within range of a
+     * point. This requires that ids are given out in increasing order so that
+     * the age of a point is newestId - id.
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @param range the maximum distance allowed, in px
+     * @param newestId the id of the newest point
+     * @param minAge points with an age less than this are ignored
+     * @return true if any old enough point in the grid is closer than range to x, y
+     */
+    public boolean anyWithinRange(float x, float y, double range, int newestId, int minAge) {
+        final double rangeSq = range*range;
+        final int minX = cell((float) (x - range)), maxX = cell((float) (x + range));
+        final int minY = cell((float) (y - range)), maxY = cell((float) (y + range));
+        query++;
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                int bucket = bucket(cx, cy);
+                if (visited[bucket] == query) { continue; }
+                visited[bucket] = query;
+                int[] bucketIds = ids[bucket];
+                float[] bucketXs = xs[bucket], bucketYs = ys[bucket];
+                for (int i = counts[bucket] - 1; i >= 0; i--) {
+                    float dx = bucketXs[i] - x, dy = bucketYs[i] - y;
+                    if (dx*dx + dy*dy < rangeSq && newestId - bucketIds[i] >= minAge) { return true; }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any point in the grid that is old enough is within range of
+     * any point on a line segment (a swept circle). Only the cells that the
+     * range around the segment covers are looked at, row by row, so the cost
+     * grows with the length of the segment in cells and not with the number
+     * of points along it.
+     * @param x0 the x coordinate of the start of the segment, in px
+     * @param y0 the y coordinate of the start of the segment, in px
+     * @param x1 the x coordinate of the end of the segment, in px
+     * @param y1 the y coordinate of the end of the segment, in px
+     * @param range the maximum distance allowed, in px
+     * @param newestId the id of the newest point
+     * @param minAge points with an age less than this are ignored
+     * @return true if any old enough point in the grid is closer than range to the segment
+     */
+    public boolean anyWithinRangeOfSegment(float x0, float y0, float x1, float y1, double range, int newestId, int minAge) {
+        final double dx = x1 - x0, dy = y1 - y0;
+        final int minY = cell((float) (Math.min(y0, y1) - range)), maxY = cell((float) (Math.max(y0, y1) + range));
+        query++;
+        for (int cy = minY; cy <= maxY; cy++) {
+            // The part of the segment close enough to this row of cells to reach into it
+            double t0 = 0, t1 = 1;
+            if (dy != 0) {
+                double ta = (cy * cellSize - range - y0) / dy, tb = ((cy + 1) * cellSize + range - y0) / dy;
+                t0 = Math.max(0, Math.min(ta, tb));
+                t1 = Math.min(1, Math.max(ta, tb));
+                if (t0 > t1) { continue; }
+            }
+            double xa = x0 + t0 * dx, xb = x0 + t1 * dx;
+            final int minX = cell((float) (Math.min(xa, xb) - range)), maxX = cell((float) (Math.max(xa, xb) + range));
+            for (int cx = minX; cx <= maxX; cx++) {
+                int bucket = bucket(cx, cy);
+                if (visited[bucket] == query) { continue; }
+                visited[bucket] = query;
+                int[] bucketIds = ids[bucket];
+                float[] bucketXs = xs[bucket], bucketYs = ys[bucket];
+                for (int i = counts[bucket] - 1; i >= 0; i--) {
+                    if (newestId - bucketIds[i] >= minAge &&
+                            Util.withinRangeOfSegment(bucketXs[i], bucketYs[i], x0, y0, x1, y1, range)) { return true; }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds all of the points in the grid that are within range of a point.
+     * The ids of the points found are available from getResults() until the
+     * next call to this method.
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @param range the maximum distance allowed, in px
+     * @return the number of points found
+     */
+    public int queryWithinRange(float x, float y, double range) {
+        final double rangeSq = range*range;
+        final int minX = cell((float) (x - range)), maxX = cell((float) (x + range));
+        final int minY = cell((float) (y - range)), maxY = cell((float) (y + range));
+        int found = 0;
+        query++;
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                int bucket = bucket(cx, cy);
+                if (visited[bucket] == query) { continue; }
+                visited[bucket] = query;
+                int[] bucketIds = ids[bucket];
+                float[] bucketXs = xs[bucket], bucketYs = ys[bucket];
+                for (int i = counts[bucket] - 1; i >= 0; i--) {
+                    float dx = bucketXs[i] - x, dy = bucketYs[i] - y;
+                    if (dx*dx + dy*dy < rangeSq) {
+                        if (found == results.length) { results = Arrays.copyOf(results, found * 2); }
+                        results[found++] = bucketIds[i];
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds all of the points in the grid that are inside a rectangle. The
+     * ids of the points found are available from getResults() until the next
+     * query. Only the cells the rectangle covers are looked at, unless it
+     * covers more cells than there are buckets, in which case every bucket is
+     * looked at once instead.
+     * @param minX the left edge of the rectangle, in px
+     * @param minY the top edge of the rectangle, in px
+     * @param maxX the right edge of the rectangle, in px
+     * @param maxY the bottom edge of the rectangle, in px
+     * @return the number of points found
+     */
+    public int queryWithinRect(float minX, float minY, float maxX, float maxY) {
+        final int minCX = cell(minX), maxCX = cell(maxX), minCY = cell(minY), maxCY = cell(maxY);
+        int found = 0;
+        if ((long) (maxCX - minCX + 1) * (maxCY - minCY + 1) >= counts.length) {
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                found = collectWithinRect(bucket, minX, minY, maxX, maxY, found);
+            }
+            return found;
+        }
+        query++;
+        for (int cy = minCY; cy <= maxCY; cy++) {
+            for (int cx = minCX; cx <= maxCX; cx++) {
+                int bucket = bucket(cx, cy);
+                if (visited[bucket] == query) { continue; }
+                visited[bucket] = query;
+                found = collectWithinRect(bucket, minX, minY, maxX, maxY, found);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds the ids of the points of a bucket that are inside a rectangle to
+     * the results.
+     * @param bucket the bucket to look in
+     * @param minX the left edge of the rectangle, in px
+     * @param minY the top edge of the rectangle, in px
+     * @param maxX the right edge of the rectangle, in px
+     * @param maxY the bottom edge of the rectangle, in px
+     * @param found the number of results so far
+     * @return the number of results after adding the ones from the bucket
+     */
+    private int collectWithinRect(int bucket, float minX, float minY, float maxX, float maxY, int found) {
+        int[] bucketIds = ids[bucket];
+        float[] bucketXs = xs[bucket], bucketYs = ys[bucket];
+        for (int i = counts[bucket] - 1; i >= 0; i--) {
+            float x = bucketXs[i], y = bucketYs[i];
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                if (found == results.length) { results = Arrays.copyOf(results, found * 2); }
+                results[found++] = bucketIds[i];
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the ids found by the last call to queryWithinRange() or
+     *         queryWithinRect(), only the number of elements returned by that
+     *         call are valid
+     */
+    public int[] getResults() { return results; }
+
+    /**
+     * @param coord an x or y coordinate, in px
+     * @return the cell the coordinate is in
+     */
+    private int cell(float coord) { return (int) Math.floor(coord / cellSize); }
+
+    /**
+     * @param cx the x coordinate of the cell
+     * @param cy the y coordinate of the cell
+     * @return the bucket the cell is hashed into
+     */
+    private int bucket(int cx, int cy) { return (cx * 0x8da6b343 ^ cy * 0xd8163841) & bucketMask; }
+}
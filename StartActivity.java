@@ -3,7 +3,6 @@ package edu.moravian.csci299.gravitysnake;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.media.MediaPlayer;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.View;
@@ -23,14 +22,14 @@ import androidx.appcompat.widget.SwitchCompat;
  * Contains the start button to initiate the start of the game, passing various information
  * through to GameActivity through an intent such as the difficulty to set appropriate parameters in SnakeGameView, as well as
  * whether or not to play music, and the highScoreKey String to be used too save with high score within preferences if player beats old
- * high score. Lifecycle methods are appropriately overridden to ensure that music audio starts when music is on and app is brought to foreground
- * but stops when app is paused, stopped, or destroyed.
+ * high score. The music is played by the app-wide AudioEngine, which keeps it going when moving to the GameActivity and
+ * pauses it when the app is in the background.
  */
 public class StartActivity extends AppCompatActivity implements View.OnClickListener, AdapterView.OnItemSelectedListener{
 
     private Spinner spinner;
     private SwitchCompat soundSwitch;
-    private MediaPlayer mediaPlayer;
+    private AudioEngine audio;
     private TextView highScoreText;
     private SharedPreferences preferences;
 
@@ -49,7 +48,7 @@ public class StartActivity extends AppCompatActivity implements View.OnClickList
         this.preferences = this.getSharedPreferences("edu.moravian.csci299.gravitysnake", Context.MODE_PRIVATE);
 
 
-        mediaPlayer = MediaPlayer.create(getApplicationContext(), R.raw.booamf);
+        audio = AudioEngine.getInstance(this);
         soundSwitch = findViewById(R.id.soundSwitch);
         highScoreText = findViewById(R.id.highScoreValue);
         TextView highScoreLabel = findViewById(R.id.highScore);
@@ -68,26 +67,13 @@ public class StartActivity extends AppCompatActivity implements View.OnClickList
 
 
         soundSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
-            if (isChecked) {
-                if(!mediaPlayer.isPlaying())
-                    mediaPlayer.start();
-                preferences.edit().putBoolean(musicKey, true).apply();
-            }
-            else {
-                mediaPlayer.pause();
-                preferences.edit().putBoolean(musicKey, false).apply();
-            }
+            audio.setSoundOn(isChecked);
+            preferences.edit().putBoolean(musicKey, isChecked).apply();
         });
 
-        if (preferences.getBoolean(musicKey, true)){
-            soundSwitch.setChecked(true);
-            if(!mediaPlayer.isPlaying())
-                mediaPlayer.start();
-        }
-        else{
-            soundSwitch.setChecked(false);
-            mediaPlayer.pause();
-        }
+        boolean soundOn = preferences.getBoolean(musicKey, true);
+        soundSwitch.setChecked(soundOn);
+        audio.setSoundOn(soundOn);
 
 
         highScoreLabel.setText(R.string.highScore);
@@ -107,56 +93,33 @@ public class StartActivity extends AppCompatActivity implements View.OnClickList
 
     /**
      * When the play button is clicked, this method is called.
-     * Create an intent with the sound setting, difficulty selected, and the high score key
-     * and pause the mediaPlayer
+     * Create an intent with the sound setting, difficulty selected, and the high score key.
+     * The music keeps playing into the game.
      */
     private void createIntentStartGame() {
         Intent intent = new Intent(this, GameActivity.class);
         intent.putExtra("SoundOnOrOffSelected", soundSwitch.isChecked());
         intent.putExtra("IndexOfDifficultySelected", difficulty);
         intent.putExtra("difficultyPreferenceKey", highScoreKey);
-        mediaPlayer.pause();
         startActivity(intent);
     }
 
     /**
-     * On activity start, create and configure the media player
+     * On activity start, play the music (if the sound switch is checked)
      */
     @Override
     protected void onStart() {
         super.onStart();
-        mediaPlayer = MediaPlayer.create(getApplicationContext(), R.raw.booamf);
-        mediaPlayer.setLooping(true);
+        audio.startMusic();
     }
 
     /**
-     * On activity pause, if the media player is playing, pause
+     * When the activity stops, it no longer needs the music. The music only pauses if the GameActivity is not showing.
      */
     @Override
-    protected void onPause() {
-        super.onPause();
-        if(mediaPlayer.isPlaying())
-            mediaPlayer.pause();
-    }
-
-    /** When the activity stops, we release the media player. */
-    @Override
     protected void onStop() {
         super.onStop();
-        mediaPlayer.release();
-//        mediaPlayer = null;
-    }
-
-
-    /**
-     * On Activity Resume, if the media player is not playing and the sound switch is checked
-     * Play the mediaPlayer
-     */
-    @Override
-    protected void onResume() {
-        super.onResume();
-        if(soundSwitch.isChecked() && !mediaPlayer.isPlaying())
-            mediaPlayer.start();
+        audio.stopMusic();
     }
 
     /**
@@ -184,31 +147,28 @@ public class StartActivity extends AppCompatActivity implements View.OnClickList
     }
 
     /**
-     * method called to set the high score textView to display the high score of difficulty currently selected.
+     * method called to set the high score textView to display the high score of difficulty currently selected, read
+     * through the HighScores store so it includes any high score not yet written to preferences.
      * Also sets highScoreKey to appropriate difficulty key so preferences can later save a new high score to
      * that specific key.
      */
     private void setHighScoreText(){
         if (difficulty == 0){
-            highScore = preferences.getInt("high_beginner_preference", 0);
             highScoreKey = "high_beginner_preference";
         }
         else if (difficulty == 1){
-            highScore = preferences.getInt("high_easy_preference", 0);
             highScoreKey = "high_easy_preference";
         }
         else if (difficulty == 2){
-            highScore = preferences.getInt("high_medium_preference", 0);
             highScoreKey = "high_medium_preference";
         }
         else if (difficulty == 3){
-            highScore = preferences.getInt("high_hard_preference", 0);
             highScoreKey = "high_hard_preference";
         }
         else{
-            highScore = preferences.getInt("high_insane_preference", 0);
             highScoreKey = "high_insane_preference";
         }
+        highScore = HighScores.getInstance(this).get(highScoreKey);
         highScoreText.setText(Integer.toString(highScore));
     }
 
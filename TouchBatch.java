@@ -0,0 +1,106 @@
+package edu.moravian.csci299.gravitysnake;
+
+/**
+ * The touched points gathered since the last tick, so they can all be given
+ * to the game at once with SnakeGame.touched(TouchBatch) instead of one at a
+ * time. A single motion event can hold several pointers and several
+ * historical samples for each, and all of them are added.
+ *
+ * The points are stored in preallocated arrays so adding one never
+ * allocates. If more points arrive before the next tick than the batch can
+ * hold the extra ones are dropped.
+ *
+ * This must only be used from one thread (the one updating the game).
+ */
+public class TouchBatch {
+    /** Default most points held at once */
+    public final static int DEFAULT_CAPACITY = 256;
+
+    /** The coordinates of each point, in px */
+    private final float[] xs, ys;
+
+    /** The number of points */
+    private int size = 0;
+
+    /** The number of points dropped because the batch was full, since it was made */
+    private int dropped = 0;
+
+    /**
+     * Create an empty batch with the default capacity.
+     */
+    public TouchBatch() { this(DEFAULT_CAPACITY); }
+
+    /**
+     * Create an empty batch.
+     * @param capacity the most points held at once
+     */
+    public TouchBatch(int capacity) {
+        xs = new float[capacity];
+        ys = new float[capacity];
+    }
+
+    /**
+     * Adds a point, unless the batch is full.
+     * @param x the x coordinate of the touched point, in px
+     * @param y the y coordinate of the touched point, in px
+     * @return true if the point was added, false if the batch was full
+     */
+    public boolean add(float x, float y) {
+        if (size == xs.length) {
+            dropped++;
+            return false;
+        }
+        xs[size] = x;
+        ys[size] = y;
+        size++;
+        return true;
+    }
+
+    /**
+     * Replaces a point, for example with a quantized version of it.
+     * @param i the index of the point, from 0 to size() - 1
+     * @param x the new x coordinate, in px
+     * @param y the new y coordinate, in px
+     */
+    public void set(int i, float x, float y) {
+        xs[i] = x;
+        ys[i] = y;
+    }
+
+    /**
+     * Removes all of the points.
+     */
+    public void clear() { size = 0; }
+
+    /**
+     * @return the number of points
+     */
+    public int size() { return size; }
+
+    /**
+     * @return true if there are no points
+     */
+    public boolean isEmpty() { return size == 0; }
+
+    /**
+     * @return the most points held at once
+     */
+    public int getCapacity() { return xs.length; }
+
+    /**
+     * @return the number of points dropped because the batch was full
+     */
+    public int getDropped() { return dropped; }
+
+    /**
+     * @param i the index of the point, from 0 to size() - 1
+     * @return the x coordinate of the point, in px
+     */
+    public float getX(int i) { return xs[i]; }
+
+    /**
+     * @param i the index of the point, from 0 to size() - 1
+     * @return the y coordinate of the point, in px
+     */
+    public float getY(int i) { return ys[i]; }
+}
@@ -17,8 +17,42 @@ public class Util {
      * @return true if the distance from a to b is less than range
      */
     public static boolean withinRange(PointF a, PointF b, double range) {
-        float dx = a.x - b.x;
-        float dy = a.y - b.y;
+        return withinRange(a.x, a.y, b.x, b.y, range);
+    }
+
+    /**
+     * Checks if two points are closer than a certain range of each other.
+     * This version takes the raw coordinates so it never needs a PointF.
+     * @param ax the x coordinate of the first point
+     * @param ay the y coordinate of the first point
+     * @param bx the x coordinate of the second point
+     * @param by the y coordinate of the second point
+     * @param range the maximum distance allowed between the points
+     * @return true if the distance from a to b is less than range
+     */
+    public static boolean withinRange(float ax, float ay, float bx, float by, double range) {
+        float dx = ax - bx;
+        float dy = ay - by;
         return dx*dx + dy*dy < range*range;
     }
+
+    /**
+     * Checks if a point is closer than a certain range of any point on a line
+     * segment, for example the path something moved along.
+     * @param px the x coordinate of the point
+     * @param py the y coordinate of the point
+     * @param ax the x coordinate of the start of the segment
+     * @param ay the y coordinate of the start of the segment
+     * @param bx the x coordinate of the end of the segment
+     * @param by the y coordinate of the end of the segment
+     * @param range the maximum distance allowed between the point and the segment
+     * @return true if the distance from the point to the closest point on the segment is less than range
+     */
+    public static boolean withinRangeOfSegment(float px, float py, float ax, float ay, float bx, float by, double range) {
+        double dx = bx - ax, dy = by - ay, qx = px - ax, qy = py - ay;
+        double lenSq = dx*dx + dy*dy;
+        double t = lenSq == 0 ? 0 : Math.max(0, Math.min(1, (qx*dx + qy*dy) / lenSq));
+        double ex = qx - t*dx, ey = qy - t*dy;
+        return ex*ex + ey*ey < range*range;
+    }
 }
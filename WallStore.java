@@ -0,0 +1,199 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Arrays;
+
+/**
+ * All of the walls in a game. The coordinates are kept in dense primitive
+ * arrays so drawing them is a straight pass over memory, and each wall is
+ * also in a SpatialGrid so that touches and head collisions only look at the
+ * walls nearby.
+ *
+ * Each wall gets a handle when it is added that stays the same until it is
+ * removed. Walls are removed by moving the last wall into the hole, so adding
+ * and removing are both constant time. The order of the walls (from 0 to
+ * size() - 1) only changes when a wall is removed, and then only for the wall
+ * that was last.
+ */
+public class WallStore {
+    /** Initial number of walls the store can hold */
+    private final static int INITIAL_CAPACITY = 64;
+
+    /** The coordinates of each wall, in px, and the handle of each wall */
+    private float[] xs = new float[INITIAL_CAPACITY], ys = new float[INITIAL_CAPACITY];
+    private int[] handles = new int[INITIAL_CAPACITY];
+
+    /** The index of the wall for each handle, or the next free handle if the handle is not in use */
+    private int[] indices = new int[INITIAL_CAPACITY];
+
+    /** The first handle not in use (-1 if every handle up to the capacity is in use) */
+    private int freeHandle = -1;
+
+    /** The number of handles ever given out (some may be free again) */
+    private int handleCount = 0;
+
+    /** The number of walls */
+    private int size = 0;
+
+    /** Spatial index of the walls, each stored with its handle as the id */
+    private final SpatialGrid grid;
+
+    /**
+     * Create an empty store.
+     * @param cellSize the width and height of each cell of the spatial index,
+     *                 in px, usually about the size of the ranges that will
+     *                 be queried
+     * @param buckets the number of buckets in the spatial index, must be a
+     *                power of 2
+     */
+    public WallStore(float cellSize, int buckets) { grid = new SpatialGrid(cellSize, buckets); }
+
+    /**
+     * @return the number of walls
+     */
+    public int size() { return size; }
+
+    /**
+     * @param i the index of the wall, from 0 to size() - 1
+     * @return the x coordinate of the wall, in px
+     */
+    public float getX(int i) { return xs[i]; }
+
+    /**
+     * @param i the index of the wall, from 0 to size() - 1
+     * @return the y coordinate of the wall, in px
+     */
+    public float getY(int i) { return ys[i]; }
+
+    /**
+     * Copies the coordinates of every wall into arrays, in index order.
+     * @param xs the array to copy the x coordinates into, at least size() long
+     * @param ys the array to copy the y coordinates into, at least size() long
+     */
+    public void copyTo(float[] xs, float[] ys) {
+        System.arraycopy(this.xs, 0, xs, 0, size);
+        System.arraycopy(this.ys, 0, ys, 0, size);
+    }
+
+    /**
+     * @param i the index of the wall, from 0 to size() - 1
+     * @return the handle of the wall
+     */
+    public int getHandle(int i) { return handles[i]; }
+
+    /**
+     * @param handle the handle of the wall, which must currently be in use
+     * @return the index of the wall, from 0 to size() - 1, which changes when other walls are removed
+     */
+    public int getIndex(int handle) { return indices[handle]; }
+
+    /**
+     * Add a wall.
+     * @param x the x coordinate of the wall, in px
+     * @param y the y coordinate of the wall, in px
+     * @return the handle of the new wall
+     */
+    public int add(float x, float y) {
+        if (size == xs.length) {
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+            handles = Arrays.copyOf(handles, size * 2);
+        }
+        int handle;
+        if (freeHandle >= 0) {
+            handle = freeHandle;
+            freeHandle = indices[handle];
+        } else {
+            if (handleCount == indices.length) { indices = Arrays.copyOf(indices, handleCount * 2); }
+            handle = handleCount++;
+        }
+        xs[size] = x;
+        ys[size] = y;
+        handles[size] = handle;
+        indices[handle] = size;
+        size++;
+        grid.insert(handle, x, y);
+        return handle;
+    }
+
+    /**
+     * Remove a wall by moving the last wall into its place.
+     * @param handle the handle of the wall, which must currently be in use
+     */
+    public void remove(int handle) {
+        int index = indices[handle];
+        grid.remove(handle, xs[index], ys[index]);
+        int last = --size;
+        if (index != last) {
+            xs[index] = xs[last];
+            ys[index] = ys[last];
+            handles[index] = handles[last];
+            indices[handles[index]] = index;
+        }
+        indices[handle] = freeHandle;
+        freeHandle = handle;
+    }
+
+    /**
+     * Remove all of the walls. The memory is kept.
+     */
+    public void clear() {
+        grid.clear();
+        size = 0;
+        handleCount = 0;
+        freeHandle = -1;
+    }
+
+    /**
+     * Checks if any wall is within range of a point. Only the walls near the
+     * point are looked at.
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @param range the maximum distance allowed, in px
+     * @return true if any wall is closer than range to x, y
+     */
+    public boolean anyWithinRange(float x, float y, double range) { return grid.anyWithinRange(x, y, range); }
+
+    /**
+     * Finds all of the walls that are within range of a point. The handles of
+     * the walls found are available from getResults() until the next call to
+     * this method.
+     * @param x the x coordinate of the point, in px
+     * @param y the y coordinate of the point, in px
+     * @param range the maximum distance allowed, in px
+     * @return the number of walls found
+     */
+    public int queryWithinRange(float x, float y, double range) { return grid.queryWithinRange(x, y, range); }
+
+    /**
+     * Finds all of the walls that are inside a rectangle. The handles of the
+     * walls found are available from getResults() until the next query.
+     * @param minX the left edge of the rectangle, in px
+     * @param minY the top edge of the rectangle, in px
+     * @param maxX the right edge of the rectangle, in px
+     * @param maxY the bottom edge of the rectangle, in px
+     * @return the number of walls found
+     */
+    public int queryWithinRect(float minX, float minY, float maxX, float maxY) {
+        return grid.queryWithinRect(minX, minY, maxX, maxY);
+    }
+
+    /**
+     * Checks if any wall is within range of any point on a line segment.
+     * @param x0 the x coordinate of the start of the segment, in px
+     * @param y0 the y coordinate of the start of the segment, in px
+     * @param x1 the x coordinate of the end of the segment, in px
+     * @param y1 the y coordinate of the end of the segment, in px
+     * @param range the maximum distance allowed, in px
+     * @return true if any wall is closer than range to the segment
+     */
+    public boolean anyWithinRangeOfSegment(float x0, float y0, float x1, float y1, double range) {
+        return grid.anyWithinRangeOfSegment(x0, y0, x1, y1, range, 0, Integer.MIN_VALUE);
+    }
+
+    /**
+     * @return the handles found by the last call to queryWithinRange() or
+     *         queryWithinRect(), only the number of elements returned by that
+     *         call are valid
+     */
+    public int[] getResults() { return grid.getResults(); }
+}
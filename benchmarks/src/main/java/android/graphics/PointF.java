@@ -0,0 +1,27 @@
+package android.graphics;
+
+/**
+ * Stand-in for android.graphics.PointF so the game core can run on a plain
+ * JVM. Only the members the game uses are provided.
+ */
+public class PointF {
+    public float x;
+    public float y;
+
+    public PointF() { }
+
+    public PointF(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public final void set(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public final void offset(float dx, float dy) {
+        x += dx;
+        y += dy;
+    }
+}
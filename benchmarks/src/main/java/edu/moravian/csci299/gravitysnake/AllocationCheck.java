@@ -0,0 +1,108 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A regression check that the per-tick hot paths of the game core do not
+ * allocate once they are warmed up. Run it on a plain JVM (HotSpot, for
+ * com.sun.management.ThreadMXBean) with:
+ * <pre>
+ *     java -cp benchmarks/out edu.moravian.csci299.gravitysnake.AllocationCheck [iterations]
+ * </pre>
+ * Each path is run for WARMUP iterations and then for the given number of
+ * iterations while the bytes allocated by the current thread are measured.
+ * It prints the bytes allocated by each path and exits with status 1 if any
+ * of them allocated a byte or more per iteration.
+ *
+ * The only allocation expected once a game is running is a bucket of a
+ * spatial grid growing the first time more points land in it than ever
+ * before, which gets rarer the longer the game runs. Allocating anything on
+ * every call (even a single object every few calls) is well over the limit.
+ *
+ * Walls are not placed since each new wall can grow the wall store, and the
+ * food is never eaten since moving it is not done every tick.
+ */
+public final class AllocationCheck {
+    private AllocationCheck() { }
+
+    /** A path of the game core to check, run once per iteration */
+    private interface HotPath {
+        void run();
+    }
+
+    /** The number of times each path is run before measuring */
+    private final static int WARMUP = 100_000;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Runs a path for a warm-up and then measures how much it allocates.
+     * @param name the name printed for the path
+     * @param iterations the number of times to run the path while measuring
+     * @param path the path to check
+     * @return true if the path allocated less than a byte per iteration
+     */
+    private static boolean check(String name, int iterations, HotPath path) {
+        for (int i = 0; i < WARMUP; i++) { path.run(); }
+        long thread = Thread.currentThread().getId();
+        THREADS.getThreadAllocatedBytes(thread); // the first call may allocate
+        long before = THREADS.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < iterations; i++) { path.run(); }
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - before;
+        boolean ok = allocated < iterations;
+        System.out.println(String.format(Locale.US, "%-32s %s %d bytes in %d iterations (%.3f bytes/iteration)",
+                name, ok ? "ok  " : "FAIL", allocated, iterations, (double) allocated / iterations));
+        return ok;
+    }
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int length = 1000;
+        boolean ok = true;
+
+        // A full update with the snake steering around a circle
+        SnakeGame circling = Fixtures.circleGame(length, 0);
+        double turn = Fixtures.circleTurn(length);
+        ok &= check("SnakeGame.update", iterations, () -> {
+            circling.setMovementDirection(circling.getMovementDirection() + turn);
+            if (!circling.update()) { throw new IllegalStateException("snake died"); }
+        });
+
+        // Moving a snake and checking it against itself
+        Snake snake = Fixtures.spiralSnake(length);
+        float step = Fixtures.STEP_PX;
+        double[] direction = { 0 };
+        ok &= check("Snake.move + pathIntersectsSelf", iterations, () -> {
+            direction[0] += 2 * Math.PI / (1.5 * length);
+            snake.move(direction[0], step);
+            snake.pathIntersectsSelf();
+        });
+
+        // Touches at random points (that may clear walls but never reach the food)
+        SnakeGame spiral = Fixtures.spiralGame(length, 0);
+        int size = Fixtures.spiralWorldSize(length);
+        Random random = new Random(42);
+        float[] touchX = new float[1024], touchY = new float[1024];
+        for (int i = 0; i < touchX.length; i++) {
+            touchX[i] = random.nextFloat() * size;
+            touchY[i] = random.nextFloat() * size;
+        }
+        float reach = (SnakeGame.FOOD_SIZE_DP + SnakeGame.TOUCH_SIZE_DP) * Fixtures.DP_TO_PX;
+        TouchBatch batch = new TouchBatch();
+        int[] next = { 0 };
+        ok &= check("SnakeGame.touched(TouchBatch)", iterations / 16, () -> {
+            batch.clear();
+            while (batch.size() < 16) {
+                int i = next[0]++ & (touchX.length - 1);
+                float dx = touchX[i] - spiral.getFoodLocation().x, dy = touchY[i] - spiral.getFoodLocation().y;
+                if (dx * dx + dy * dy > reach * reach) { batch.add(touchX[i], touchY[i]); }
+            }
+            spiral.touched(batch);
+        });
+
+        if (!ok) { System.exit(1); }
+    }
+}
@@ -0,0 +1,43 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Locale;
+
+/**
+ * A stress test of the game core with many bot snakes sharing one Arena. Run
+ * it on a plain JVM with:
+ * <pre>
+ *     java -cp benchmarks/out edu.moravian.csci299.gravitysnake.ArenaStress [snakes] [ticks] [serial|parallel]
+ * </pre>
+ * Dead snakes respawn right away so the number of agents stays the same. It
+ * prints the throughput in ticks and snake-ticks per second along with how
+ * many snakes and body points are in the arena.
+ */
+public final class ArenaStress {
+    private ArenaStress() { }
+
+    public static void main(String[] args) {
+        int snakes = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        boolean parallel = args.length <= 2 || args[2].equals("parallel");
+
+        // About 400 dp x 400 dp of room per snake
+        int size = (int) (Math.sqrt(snakes) * 400 * Fixtures.DP_TO_PX);
+        Arena arena = new Arena(size, size, Fixtures.DP_TO_PX, snakes, snakes / 2 + 1, 25, 42);
+        for (int i = 0; i < snakes; i++) { arena.setBot(i, new SnakeBot()); }
+        arena.setRespawn(true);
+        arena.setParallel(parallel);
+
+        // Warm up and then measure in rounds
+        for (int i = 0; i < ticks / 10; i++) { arena.update(); }
+        int rounds = 5;
+        for (int round = 0; round < rounds; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < ticks / rounds; i++) { arena.update(); }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(Locale.US,
+                    "%s snakes=%d ticks/s=%.0f snake-ticks/s=%.0f alive=%d bodyPoints=%d",
+                    parallel ? "parallel" : "serial", snakes, ticks / rounds / seconds,
+                    (double) ticks / rounds * snakes / seconds, arena.getAliveCount(), arena.getBodyPointCount()));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks picking the body points to draw for a spiral snake, which curves
+ * everywhere so it is close to the worst case for the decimator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyDecimatorBenchmark {
+    /** The number of body pieces */
+    @Param({"100", "1000", "10000", "50000"})
+    int length;
+
+    private FrameSnapshot frame;
+    private final BodyDecimator decimator = new BodyDecimator();
+
+    @Setup
+    public void setup() {
+        FrameExchange frames = new FrameExchange();
+        frames.publish(Fixtures.spiralGame(length, 0));
+        frame = frames.latest();
+    }
+
+    /** Picks the points along the whole body, returning the number picked. */
+    @Benchmark
+    public int decimate() { return decimator.decimate(frame, frame.getBodySize() - 1, 0); }
+}
@@ -0,0 +1,133 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A headless tool for checking the difficulty presets. For each preset it
+ * plays thousands of seeded games with a simple computer player on the common
+ * fork-join pool and prints the distribution of how long the player survived
+ * and what it scored. Run it on a plain JVM with:
+ * <pre>
+ *     java -cp benchmarks/out edu.moravian.csci299.gravitysnake.Calibration [games] [seed] [maxSeconds]
+ * </pre>
+ * Each game gets its own seed split off of the main seed, so the results
+ * only depend on the arguments and not on how the games are spread over the
+ * threads.
+ *
+ * The player is the same SnakeBot that plays in an Arena. It only steers (it
+ * never touches walls or the food), so the numbers are a baseline to compare the presets by rather than what a person
+ * would get.
+ */
+public final class Calibration {
+    /** The size of the world, in px, and the dp to px factor (a typical phone) */
+    private final static int WIDTH = 1080, HEIGHT = 1920;
+    private final static float DP_TO_PX = Fixtures.DP_TO_PX;
+
+    /** The number of ticks in a second of play */
+    private final static double TICKS_PER_SECOND = SimulationClock.DEFAULT_TICKS_PER_SECOND;
+
+    /** The number of presets, see SnakeGame.setDifficulty() */
+    private final static int PRESETS = 5;
+
+    /** The number of games each fork-join task plays without splitting */
+    private final static int GAMES_PER_TASK = 8;
+
+    private Calibration() { }
+
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int maxTicks = (int) ((args.length > 2 ? Double.parseDouble(args[2]) : 300) * TICKS_PER_SECOND);
+
+        System.out.println(String.format(Locale.US, "%d games per preset, seed %d, at most %d ticks per game, %d threads",
+                games, seed, maxTicks, ForkJoinPool.commonPool().getParallelism()));
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int preset = 0; preset < PRESETS; preset++) {
+            long[] gameSeeds = new long[games];
+            SplittableRandom presetSeeds = seeds.split();
+            for (int i = 0; i < games; i++) { gameSeeds[i] = presetSeeds.nextLong(); }
+            int[] ticks = new int[games], scores = new int[games];
+
+            long start = System.nanoTime();
+            ForkJoinPool.commonPool().invoke(new Batch(preset, maxTicks, gameSeeds, ticks, scores, 0, games));
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            long totalTicks = 0;
+            int capped = 0;
+            for (int t : ticks) {
+                totalTicks += t;
+                if (t >= maxTicks) { capped++; }
+            }
+            System.out.println(String.format(Locale.US, "preset %d  %.0f ticks/s  %d still alive at the end", preset,
+                    totalTicks / seconds, capped));
+            System.out.println("  survival (s) " + distribution(ticks, 1 / TICKS_PER_SECOND));
+            System.out.println("  score        " + distribution(scores, 1));
+        }
+    }
+
+    /**
+     * Plays a range of the games, splitting it in half until it is small.
+     */
+    private static final class Batch extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int preset, maxTicks;
+        private final long[] seeds;
+        private final int[] ticks, scores;
+        private final int from, to;
+
+        Batch(int preset, int maxTicks, long[] seeds, int[] ticks, int[] scores, int from, int to) {
+            this.preset = preset;
+            this.maxTicks = maxTicks;
+            this.seeds = seeds;
+            this.ticks = ticks;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                SnakeGame game = new SnakeGame();
+                SnakeBot bot = new SnakeBot();
+                game.setDpToPxFactor(DP_TO_PX);
+                game.setDifficulty(preset);
+                for (int i = from; i < to; i++) {
+                    game.startGame(WIDTH, HEIGHT, seeds[i]);
+                    int tick = 0;
+                    while (tick < maxTicks) {
+                        game.setMovementDirection(bot.steer(game, 0));
+                        tick++;
+                        if (!game.update()) { break; }
+                    }
+                    ticks[i] = tick;
+                    scores[i] = game.getScore();
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Batch(preset, maxTicks, seeds, ticks, scores, from, middle),
+                        new Batch(preset, maxTicks, seeds, ticks, scores, middle, to));
+            }
+        }
+    }
+
+    /**
+     * @param values the values, which are sorted
+     * @param scale the amount to multiply each value by
+     * @return the mean, 10th, 50th, and 90th percentiles, and max of the scaled values
+     */
+    private static String distribution(int[] values, double scale) {
+        Arrays.sort(values);
+        double sum = 0;
+        for (int v : values) { sum += v; }
+        int n = values.length;
+        return String.format(Locale.US, "mean=%8.1f p10=%8.1f p50=%8.1f p90=%8.1f max=%8.1f",
+                sum / n * scale, values[n / 10] * scale, values[n / 2] * scale, values[n * 9 / 10] * scale,
+                values[n - 1] * scale);
+    }
+}
@@ -0,0 +1,141 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+/**
+ * Helpers for setting up snakes and games in a known state for the
+ * benchmarks. Snakes are either grown along a square spiral whose arms are
+ * far enough apart that the snake never touches itself, or steered around a
+ * circle that is longer than the snake so it can keep moving forever.
+ */
+final class Fixtures {
+    /** The dp to px factor used by all benchmarks (an xxhdpi-like density) */
+    static final float DP_TO_PX = 2.75f;
+
+    /** The distance of a single step of the snake, in px */
+    static final float STEP_PX = Snake.STEP_DISTANCE_DP * DP_TO_PX;
+
+    /** The number of steps between parallel arms of the spiral (60 dp) */
+    static final int SPIRAL_SPACING_STEPS = 24;
+
+    private Fixtures() { }
+
+    /**
+     * Gives the direction to move each step to travel along a square spiral
+     * going outwards: right, down, left, up with each pair of arms longer
+     * than the last.
+     */
+    static final class Spiral {
+        private int leg = 0;
+        private int left = SPIRAL_SPACING_STEPS;
+
+        /**
+         * @return the direction for the next step, in radians
+         */
+        double next() {
+            if (left == 0) {
+                leg++;
+                left = (leg / 2 + 1) * SPIRAL_SPACING_STEPS;
+            }
+            left--;
+            return (leg & 3) * Math.PI / 2;
+        }
+    }
+
+    /**
+     * @param length the number of body pieces
+     * @return the width and height of a square world that fits a spiral snake
+     *         of the given length started at its center, in px
+     */
+    static int spiralWorldSize(int length) {
+        // A spiral with n pairs of arms uses about n^2 * spacing steps and is n * spacing steps wide
+        double arms = Math.sqrt((double) length / SPIRAL_SPACING_STEPS) + 2;
+        return (int) Math.ceil(arms * SPIRAL_SPACING_STEPS * STEP_PX) + 200;
+    }
+
+    /**
+     * Creates a snake with exactly the given number of body pieces laid out
+     * along a square spiral.
+     * @param length the number of body pieces
+     * @return the snake
+     */
+    static Snake spiralSnake(int length) {
+        float center = spiralWorldSize(length) / 2f;
+        Snake snake = new Snake(new PointF(center, center), DP_TO_PX, length - 1);
+        Spiral spiral = new Spiral();
+        while (snake.getBodySize() < length) { snake.move(spiral.next(), STEP_PX); }
+        return snake;
+    }
+
+    /**
+     * Creates a game that is running with a snake of exactly the given number
+     * of body pieces laid out along a square spiral. The snake moves one step
+     * per update and eating food does not change the speed or length.
+     * @param length the number of body pieces
+     * @param wallPlacementProbability the probability of placing a wall each update
+     * @return the game
+     */
+    static SnakeGame spiralGame(int length, double wallPlacementProbability) {
+        int size = spiralWorldSize(length);
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(DP_TO_PX);
+        game.setInitialSpeed(Snake.STEP_DISTANCE_DP);
+        game.setStartingLength(length - 1);
+        game.setLengthIncreasePerFood(0);
+        game.setSpeedIncreasePerFood(0);
+        game.setWallPlacementProbability(0);
+        game.startGame(size, size);
+        Spiral spiral = new Spiral();
+        while (game.getSnakeBodySize() < length) {
+            game.setMovementDirection(spiral.next());
+            if (!game.update()) { throw new IllegalStateException("snake died while growing"); }
+        }
+        game.setWallPlacementProbability(wallPlacementProbability);
+        return game;
+    }
+
+    /**
+     * @param length the number of body pieces
+     * @return the amount to turn each step, in radians, so that the snake
+     *         moves around a circle 1.5 times as long as itself
+     */
+    static double circleTurn(int length) { return 2 * Math.PI / (1.5 * length); }
+
+    /**
+     * @param length the number of body pieces
+     * @return the width and height of a square world that fits the circle of
+     *         a circling snake of the given length started at its center, in px
+     */
+    static int circleWorldSize(int length) {
+        double radius = STEP_PX / circleTurn(length);
+        return (int) Math.ceil(4 * radius) + 200;
+    }
+
+    /**
+     * Creates a game that is running with a snake of exactly the given number
+     * of body pieces moving around a circle (turning by circleTurn() each
+     * step). The snake moves one step per update and eating food does not
+     * change the speed or length.
+     * @param length the number of body pieces
+     * @param wallPlacementProbability the probability of placing a wall each update
+     * @return the game
+     */
+    static SnakeGame circleGame(int length, double wallPlacementProbability) {
+        int size = circleWorldSize(length);
+        double turn = circleTurn(length);
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(DP_TO_PX);
+        game.setInitialSpeed(Snake.STEP_DISTANCE_DP);
+        game.setStartingLength(length - 1);
+        game.setLengthIncreasePerFood(0);
+        game.setSpeedIncreasePerFood(0);
+        game.setWallPlacementProbability(0);
+        game.startGame(size, size);
+        while (game.getSnakeBodySize() < length) {
+            game.setMovementDirection(game.getMovementDirection() + turn);
+            if (!game.update()) { throw new IllegalStateException("snake died while growing"); }
+        }
+        game.setWallPlacementProbability(wallPlacementProbability);
+        return game;
+    }
+}
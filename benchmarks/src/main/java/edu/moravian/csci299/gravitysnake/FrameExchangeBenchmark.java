@@ -0,0 +1,48 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks publishing a frame of a game with a long spiral snake and some
+ * walls and taking it on the renderer's side, which is the per-tick cost of
+ * handing frames from the simulation to the renderer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameExchangeBenchmark {
+    /** The number of body pieces */
+    @Param({"1000", "10000", "50000"})
+    int length;
+
+    private SnakeGame game;
+    private final FrameExchange frames = new FrameExchange();
+
+    @Setup
+    public void setup() {
+        game = Fixtures.spiralGame(length, 0.05);
+        for (int i = 0; i < 200; i++) { game.update(); } // place some walls
+    }
+
+    /** Publishes the game and takes the frame, returning it so it is not optimized away. */
+    @Benchmark
+    public FrameSnapshot publishAndTake() {
+        frames.publish(game);
+        return frames.latest();
+    }
+}
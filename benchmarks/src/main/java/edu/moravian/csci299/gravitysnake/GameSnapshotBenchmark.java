@@ -0,0 +1,54 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks saving and restoring a snapshot of a game with a long spiral
+ * snake and some walls. The size of the snapshot is printed during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameSnapshotBenchmark {
+    /** The number of body pieces */
+    @Param({"1000", "10000", "50000"})
+    int length;
+
+    private SnakeGame game;
+    private final SnakeGame restored = new SnakeGame();
+    private byte[] snapshot;
+
+    @Setup
+    public void setup() {
+        game = Fixtures.spiralGame(length, 0.05);
+        for (int i = 0; i < 200; i++) { game.update(); } // place some walls
+        snapshot = GameSnapshot.save(game);
+        System.out.println();
+        System.out.println("snapshot of " + length + " pieces: " + snapshot.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] save() { return GameSnapshot.save(game); }
+
+    @Benchmark
+    public SnakeGame restore() throws IOException {
+        GameSnapshot.restore(snapshot, restored);
+        return restored;
+    }
+}
@@ -0,0 +1,102 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A property check that Snake.move keeps the head on the path it should take
+ * over long games. Run it on a plain JVM with:
+ * <pre>
+ *     java -cp benchmarks/out edu.moravian.csci299.gravitysnake.MoveAccuracyCheck [ticks] [runs]
+ * </pre>
+ * Each run moves a snake for the given number of ticks with random direction
+ * changes and random speeds (from a fraction of a step to many steps per
+ * tick), steering back towards the middle whenever it wanders too far. Next
+ * to it the exact position the snake should have reached is added up with
+ * BigDecimal to 40 digits. After every tick:
+ * <ul>
+ *     <li>the head (a float) plus the distance still to be travelled must be
+ *     within TOLERANCE_PX of the exact position, so nothing builds up over
+ *     the ticks</li>
+ *     <li>the distance still to be travelled must be at most one step, so
+ *     the head never falls behind</li>
+ * </ul>
+ * The head itself is not compared to a step-by-step reference: when the
+ * distance is within rounding of a whole number of steps the two can take
+ * the last step on different ticks, and from then on the leftover distances
+ * point in different directions.
+ *
+ * The unit vector of each direction comes from Math.cos() and Math.sin() for
+ * both, since the directions are the input. It prints the largest errors of
+ * each run and exits with status 1 if any tick broke either property.
+ */
+public final class MoveAccuracyCheck {
+    private MoveAccuracyCheck() { }
+
+    /** The furthest the head plus the distance still to be travelled may be from the exact position, in px */
+    private final static double TOLERANCE_PX = 1e-3;
+
+    /** The precision of the exact position */
+    private final static MathContext MC = new MathContext(40, RoundingMode.HALF_EVEN);
+
+    /** The width and height of the world the snake stays in, in px */
+    private final static float WORLD_PX = 2000f;
+
+    /**
+     * Moves a snake while adding up its exact position and compares the two.
+     * @param seed the seed for the directions and speeds
+     * @param dpToPx the dp to px factor of the snake
+     * @param ticks the number of moves
+     * @return true if both properties held after every move
+     */
+    private static boolean run(long seed, float dpToPx, int ticks) {
+        Random random = new Random(seed);
+        float center = WORLD_PX / 2;
+        Snake snake = new Snake(new PointF(center, center), dpToPx, 50);
+        double stepDist = Snake.STEP_DISTANCE_DP * dpToPx;
+        BigDecimal exactX = new BigDecimal(center), exactY = new BigDecimal(center);
+        double direction = 0, speed = Snake.STEP_DISTANCE_DP;
+        long steps = 0;
+        double maxError = 0, maxCarry = 0;
+        for (int tick = 0; tick < ticks; tick++) {
+            // Sometimes turn or change speed, and head back to the middle when too far out
+            if (random.nextInt(8) == 0) { direction += random.nextGaussian() * 0.5; }
+            if (random.nextInt(64) == 0) { speed = Snake.STEP_DISTANCE_DP * Math.exp(random.nextDouble() * 5 - 1.5); }
+            float x = snake.getBodyX(0), y = snake.getBodyY(0);
+            if (Math.abs(x - center) > WORLD_PX * 0.4 || Math.abs(y - center) > WORLD_PX * 0.4) {
+                direction = Math.atan2(center - y, center - x) + random.nextGaussian() * 0.2;
+            }
+
+            double distance = speed * dpToPx;
+            steps += snake.move(direction, distance);
+            BigDecimal d = new BigDecimal(distance);
+            exactX = exactX.add(new BigDecimal(Math.cos(direction)).multiply(d, MC), MC);
+            exactY = exactY.add(new BigDecimal(Math.sin(direction)).multiply(d, MC), MC);
+
+            double carryX = snake.getDistXToTravel(), carryY = snake.getDistYToTravel();
+            double errorX = new BigDecimal(snake.getBodyX(0)).add(new BigDecimal(carryX)).subtract(exactX, MC).doubleValue();
+            double errorY = new BigDecimal(snake.getBodyY(0)).add(new BigDecimal(carryY)).subtract(exactY, MC).doubleValue();
+            maxError = Math.max(maxError, Math.hypot(errorX, errorY));
+            maxCarry = Math.max(maxCarry, Math.hypot(carryX, carryY) / stepDist);
+        }
+        boolean ok = maxError <= TOLERANCE_PX && maxCarry <= 1 + 1e-9;
+        System.out.println(String.format(Locale.US,
+                "seed=%d dpToPx=%.2f ticks=%d steps=%d %s max error %.2e px, max carry %.6f steps",
+                seed, dpToPx, ticks, steps, ok ? "ok  " : "FAIL", maxError, maxCarry));
+        return ok;
+    }
+
+    public static void main(String[] args) {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        float[] densities = { 1f, 2.75f, 3.5f };
+        boolean ok = true;
+        for (int i = 0; i < runs; i++) { ok &= run(i + 1, densities[i % densities.length], ticks); }
+        if (!ok) { System.exit(1); }
+    }
+}
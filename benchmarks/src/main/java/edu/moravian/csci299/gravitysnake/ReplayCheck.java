@@ -0,0 +1,105 @@
+package edu.moravian.csci299.gravitysnake;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * A regression check that recorded games replay exactly. Run it on a plain
+ * JVM with:
+ * <pre>
+ *     java -cp benchmarks/out edu.moravian.csci299.gravitysnake.ReplayCheck [games] [seed] [maxSeconds]
+ * </pre>
+ * Each game is started with its own seed split off of the main seed, cycling
+ * through the difficulty presets, and played through a GameRecorder by the
+ * same SnakeBot that Calibration uses. The bot only steers, so every so often
+ * a batch of touches along a random stroke (or a single touch) is given to
+ * the game as well, which clears walls and sometimes catches the food. The
+ * recording is then replayed with GameReplayer, which must match it at every
+ * checkpoint and at the end, and must replay the same number of updates to
+ * the same score.
+ *
+ * It prints a line for each game that did not replay exactly and a summary,
+ * and exits with status 1 if any game did not. A failure means the game no
+ * longer plays out the same from the same input: either something in the
+ * simulation is not deterministic, or it changed without the version in
+ * GameRecorder.MAGIC being bumped.
+ */
+public final class ReplayCheck {
+    private ReplayCheck() { }
+
+    /** The size of the world, in px, and the dp to px factor (a typical phone) */
+    private final static int WIDTH = 1080, HEIGHT = 1920;
+    private final static float DP_TO_PX = Fixtures.DP_TO_PX;
+
+    /** The number of presets, see SnakeGame.setDifficulty() */
+    private final static int PRESETS = 5;
+
+    /** One in this many ticks gets touches */
+    private final static int TOUCH_ODDS = 8;
+
+    /** The most points in a batch of touches */
+    private final static int MAX_TOUCHES = 24;
+
+    /**
+     * Plays and records a game, then replays the recording.
+     * @param index the number of the game, which picks the preset
+     * @param seed the seed of the game and its touches
+     * @param maxTicks the most updates to play
+     * @return true if the replay matched the recording
+     */
+    private static boolean run(int index, long seed, int maxTicks) throws IOException {
+        SnakeGame game = new SnakeGame();
+        game.setDpToPxFactor(DP_TO_PX);
+        game.setDifficulty(index % PRESETS);
+        GameRecorder recorder = new GameRecorder(game);
+        SnakeBot bot = new SnakeBot();
+        Random random = new Random(seed);
+        TouchBatch touches = new TouchBatch();
+        recorder.startGame(WIDTH, HEIGHT, seed);
+
+        int tick = 0;
+        while (tick < maxTicks) {
+            recorder.setMovementDirection(bot.steer(game, 0));
+            if (random.nextInt(TOUCH_ODDS) == 0) {
+                float x = random.nextFloat() * WIDTH, y = random.nextFloat() * HEIGHT;
+                if (random.nextBoolean()) {
+                    recorder.touched(x, y);
+                } else {
+                    float dx = (float) random.nextGaussian() * 8 * DP_TO_PX, dy = (float) random.nextGaussian() * 8 * DP_TO_PX;
+                    touches.clear();
+                    for (int i = 1 + random.nextInt(MAX_TOUCHES); i > 0; i--, x += dx, y += dy) { touches.add(x, y); }
+                    recorder.touched(touches);
+                }
+            }
+            tick++;
+            if (!recorder.update()) { break; }
+        }
+
+        GameReplayer.Result result = GameReplayer.replay(recorder.toByteArray());
+        boolean ok = result.matched() && result.ticks == tick && result.game.getScore() == game.getScore();
+        if (!ok) {
+            System.out.println(String.format(Locale.US,
+                    "game %d seed=%d preset=%d FAIL recorded %d ticks score %d, replayed %d ticks score %d, first mismatch at tick %d",
+                    index, seed, index % PRESETS, tick, game.getScore(), result.ticks, result.game.getScore(),
+                    result.firstMismatchTick));
+        }
+        return ok;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int maxTicks = (int) ((args.length > 2 ? Double.parseDouble(args[2]) : 120) * SimulationClock.DEFAULT_TICKS_PER_SECOND);
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        int failed = 0;
+        for (int i = 0; i < games; i++) {
+            if (!run(i, seeds.nextLong(), maxTicks)) { failed++; }
+        }
+        System.out.println(String.format(Locale.US, "%d games, seed %d, at most %d ticks per game: %s %d did not replay exactly",
+                games, seed, maxTicks, failed == 0 ? "ok  " : "FAIL", failed));
+        if (failed > 0) { System.exit(1); }
+    }
+}
@@ -0,0 +1,73 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the collision checks of a Snake: the head against the rest of
+ * the body and the head against walls. None of the checks hit anything, so
+ * they measure the worst case where every nearby item has to be looked at.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnakeCollisionBenchmark {
+    /** The number of body pieces */
+    @Param({"100", "1000", "10000"})
+    int length;
+
+    /** The number of walls */
+    @Param({"10", "100", "1000"})
+    int walls;
+
+    private final float wallRadius = SnakeGame.WALL_SIZE_DP * Fixtures.DP_TO_PX;
+    private Snake snake;
+    private WallStore wallStore;
+    private List<PointF> wallList;
+
+    @Setup
+    public void setup() {
+        snake = Fixtures.spiralSnake(length);
+        int size = Fixtures.spiralWorldSize(length);
+        wallStore = new WallStore((Snake.BODY_PIECE_SIZE_DP + SnakeGame.WALL_SIZE_DP) * Fixtures.DP_TO_PX, 1024);
+        wallList = new ArrayList<>();
+        Random random = new Random(42);
+        while (wallList.size() < walls) {
+            PointF wall = new PointF(random.nextFloat() * size, random.nextFloat() * size);
+            wallList.add(wall);
+            if (snake.headIntersectsAnyItem(wallList, wallRadius)) {
+                wallList.remove(wallList.size() - 1); // keep the head clear so every check is a miss
+            } else {
+                wallStore.add(wall.x, wall.y);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean headIntersectsSelf() { return snake.headIntersectsSelf(); }
+
+    @Benchmark
+    public boolean headIntersectsAnyItemStore() { return snake.headIntersectsAnyItem(wallStore, wallRadius); }
+
+    @Benchmark
+    public boolean headIntersectsAnyItemList() { return snake.headIntersectsAnyItem(wallList, wallRadius); }
+}
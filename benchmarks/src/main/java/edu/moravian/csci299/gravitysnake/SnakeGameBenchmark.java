@@ -0,0 +1,104 @@
+package edu.moravian.csci299.gravitysnake;
+
+import android.graphics.PointF;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks a whole SnakeGame: a full update, a touch, and placing the food
+ * with a long snake taking up most of the world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnakeGameBenchmark {
+    /** The number of body pieces */
+    @Param({"100", "1000", "10000"})
+    int length;
+
+    /** The probability of placing a wall each update */
+    @Param({"0", "0.0075"})
+    double wallPlacementProbability;
+
+    /** The number of precomputed touch points, must be a power of 2 */
+    private final static int TOUCHES = 1024;
+
+    private SnakeGame circling, spiral;
+    private int size;
+    private double turn;
+    private final float[] touchX = new float[TOUCHES], touchY = new float[TOUCHES];
+    private int touch;
+
+    /** The number of points in each batch of touches, must divide TOUCHES */
+    private final static int BATCH = 16;
+    private final TouchBatch batch = new TouchBatch();
+
+    @Setup
+    public void setup() {
+        circling = Fixtures.circleGame(length, wallPlacementProbability);
+        size = Fixtures.circleWorldSize(length);
+        turn = Fixtures.circleTurn(length);
+        spiral = Fixtures.spiralGame(length, wallPlacementProbability);
+        int spiralSize = Fixtures.spiralWorldSize(length);
+        Random random = new Random(42);
+        for (int i = 0; i < TOUCHES; i++) {
+            touchX[i] = random.nextFloat() * spiralSize;
+            touchY[i] = random.nextFloat() * spiralSize;
+        }
+    }
+
+    /**
+     * A full update with the snake steering around a circle. If the snake
+     * hits a wall the game is restarted, which is rare enough to not matter.
+     */
+    @Benchmark
+    public boolean update() {
+        circling.setMovementDirection(circling.getMovementDirection() + turn);
+        if (!circling.update()) {
+            circling.startGame(size, size);
+            return false;
+        }
+        return true;
+    }
+
+    /** A touch at a random point in the world. */
+    @Benchmark
+    public boolean touched() {
+        touch = (touch + 1) & (TOUCHES - 1);
+        return spiral.touched(touchX[touch], touchY[touch]);
+    }
+
+    /** Touching the food, which moves it to a new random location away from the snake. */
+    /** A batch of BATCH touch points given to the game at once, as one tick of a fast swipe would be. */
+    @Benchmark
+    public boolean touchedBatch() {
+        batch.clear();
+        for (int i = 0; i < BATCH; i++) {
+            touch = (touch + 1) & (TOUCHES - 1);
+            batch.add(touchX[touch], touchY[touch]);
+        }
+        return spiral.touched(batch);
+    }
+
+    @Benchmark
+    public boolean placeFood() {
+        PointF food = spiral.getFoodLocation();
+        return spiral.touched(food.x, food.y);
+    }
+}
@@ -0,0 +1,52 @@
+package edu.moravian.csci299.gravitysnake;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks Snake.move at several speeds and lengths. The snake steers
+ * around a circle big enough that it never reaches its own tail, so every
+ * call does the same amount of work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnakeMoveBenchmark {
+    /** The number of body pieces */
+    @Param({"100", "1000", "10000"})
+    int length;
+
+    /** The distance moved by each call, in dp */
+    @Param({"1", "2.5", "10", "40"})
+    float speedDp;
+
+    private Snake snake;
+    private double direction, distance, turn;
+
+    @Setup
+    public void setup() {
+        snake = Fixtures.spiralSnake(length);
+        distance = speedDp * Fixtures.DP_TO_PX;
+        turn = distance / (2 * length * Fixtures.STEP_PX); // a circle with a circumference over 12 times the length
+    }
+
+    @Benchmark
+    public int move() {
+        direction += turn;
+        return snake.move(direction, distance);
+    }
+}